@@ -0,0 +1,78 @@
+package io.krakens.grok.api;
+
+/**
+ * {@code BudgetedCharSequence} counts the chars a regex engine reads from a line, and stops the
+ * engine by throwing {@link BudgetExceededException} once the {@link MatchBudget} is spent.
+ *
+ * @since 0.1.10
+ */
+final class BudgetedCharSequence implements CharSequence {
+
+  /**
+   * Reads between two checks of the clock, a power of 2.
+   */
+  private static final int CLOCK_INTERVAL = 1024;
+
+  private CharSequence text;
+  private long deadline;
+  private boolean timed;
+  private long remainingReads;
+  private int reads;
+
+  BudgetedCharSequence() {}
+
+  BudgetedCharSequence(CharSequence text, MatchBudget budget) {
+    reset(text, budget);
+  }
+
+  /**
+   * Start counting the reads of another line, with a whole budget.
+   *
+   * @return this sequence
+   */
+  BudgetedCharSequence reset(CharSequence text, MatchBudget budget) {
+    this.text = text;
+    this.remainingReads = budget.getMaximumCharReads();
+    this.reads = 0;
+    this.timed = budget.isTimed();
+    this.deadline = timed ? System.nanoTime() + budget.getTimeoutNanos() : 0;
+    return this;
+  }
+
+  @Override
+  public int length() {
+    return text.length();
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (--remainingReads < 0) {
+      throw BudgetExceededException.INSTANCE;
+    }
+    if (timed && (++reads & (CLOCK_INTERVAL - 1)) == 0 && System.nanoTime() - deadline > 0) {
+      throw BudgetExceededException.INSTANCE;
+    }
+    return text.charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return text.subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return text.toString();
+  }
+
+  /**
+   * Thrown through the regex engine when the budget is spent, shared and without stack trace.
+   */
+  static final class BudgetExceededException extends RuntimeException {
+    static final BudgetExceededException INSTANCE = new BudgetExceededException();
+
+    private BudgetExceededException() {
+      super("Match budget exceeded", null, false, false);
+    }
+  }
+}
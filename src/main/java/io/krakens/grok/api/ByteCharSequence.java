@@ -0,0 +1,106 @@
+package io.krakens.grok.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code ByteCharSequence} is a {@link CharSequence} view over ASCII bytes, in a heap, direct
+ * or memory mapped {@link ByteBuffer}.
+ * <br>
+ * Chars are read straight from the bytes: matching a line does not decode it, and a capture is only
+ * decoded into a {@code String} when its value is read. Use {@link #of(ByteBuffer)}, which falls back
+ * to a UTF-8 decoded copy when the bytes are not pure ASCII.
+ * <br>
+ * The bytes must not change while the view, or a {@link Match} over it, is in use.
+ *
+ * @since 0.1.10
+ */
+public final class ByteCharSequence implements CharSequence {
+
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
+  private final ByteBuffer bytes;
+  private final int offset;
+  private final int length;
+
+  private ByteCharSequence(ByteBuffer bytes, int offset, int length) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Get a char view of the remaining bytes of the buffer, decoded as UTF-8. The position of the buffer
+   * is not changed.
+   *
+   * @param buffer : UTF-8 or ASCII bytes
+   * @return a view over the bytes when they are ASCII, a decoded copy otherwise
+   */
+  public static CharSequence of(ByteBuffer buffer) {
+    int start = buffer.position();
+    int end = buffer.limit();
+    if (isAscii(buffer, start, end)) {
+      return new ByteCharSequence(buffer, start, end - start);
+    }
+    // malformed input is replaced, as String does
+    return StandardCharsets.UTF_8.decode(buffer.duplicate());
+  }
+
+  private static boolean isAscii(ByteBuffer buffer, int start, int end) {
+    int index = start;
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      int arrayOffset = buffer.arrayOffset();
+      for (; index < end; index++) {
+        if (array[arrayOffset + index] < 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+    for (; index + 8 <= end; index += 8) {
+      if ((buffer.getLong(index) & HIGH_BITS) != 0) {
+        return false;
+      }
+    }
+    for (; index < end; index++) {
+      if (buffer.get(index) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+    }
+    return (char) bytes.get(offset + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+    }
+    return new ByteCharSequence(bytes, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    if (bytes.hasArray()) {
+      return new String(bytes.array(), bytes.arrayOffset() + offset, length, StandardCharsets.ISO_8859_1);
+    }
+    byte[] copy = new byte[length];
+    ByteBuffer view = bytes.duplicate();
+    view.position(offset);
+    view.get(copy);
+    return new String(copy, StandardCharsets.ISO_8859_1);
+  }
+}
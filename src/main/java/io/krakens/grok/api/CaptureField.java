@@ -0,0 +1,149 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.krakens.grok.api.Converter.IConverter;
+
+/**
+ * {@code CaptureField} is one step of the capture plan of a {@code Grok}: which group to read, under which
+ * key to store it, how to convert it and whether it may have to be merged with another value of the same key.
+ * <br>
+ * The plan is resolved once when the {@code Grok} is built, so {@link Match#capture()} reads the groups by
+ * number without looking up names or splitting keys.
+ *
+ * @since 0.1.10
+ */
+final class CaptureField implements Serializable {
+
+  /**
+   * Name of the group in the named regex, such as {@code name0}.
+   */
+  final String groupName;
+  /** Number of the group in the named regex, -1 when it can't be resolved. */
+  final int group;
+  /**
+   * Position of the group in {@link Grok#namedGroups}.
+   */
+  final int position;
+  /** Key of the value in the captures, the semantic without its type. */
+  final String key;
+  /**
+   * Key of the null value of a group which did not take part in the match: the semantic with its type, as
+   * {@link Match#capture()} has always stored it, the same as {@link #key} for strings.
+   */
+  final String emptyKey;
+  /** Converter of the value, null for strings. */
+  final IConverter<?> converter;
+  /**
+   * Type given by the semantic of the group.
+   */
+  final Converter.Type type;
+  /** Key of the conversion failure, null without converter. */
+  final String failureKey;
+  /**
+   * Whether another field may already have stored a value under the same key: the value is then merged,
+   * otherwise it is simply stored.
+   */
+  final boolean merge;
+
+  private CaptureField(String groupName, int group, int position, String key, String emptyKey,
+      IConverter<?> converter, Converter.Type type, boolean merge) {
+    this.groupName = groupName;
+    this.group = group;
+    this.position = position;
+    this.key = key;
+    this.emptyKey = emptyKey;
+    this.converter = converter;
+    this.type = type;
+    this.failureKey = converter == null ? null : key + "_grokfailure";
+    this.merge = merge;
+  }
+
+  /**
+   * Build the capture plan of the given named groups, in their order. Groups captured as {@code UNWANTED}
+   * are left out.
+   *
+   * @param namedGroups : group names, in the order of the named regex
+   * @param groupIndexes : number of each group, or null when they can't be resolved
+   * @param namedRegexCollection : semantic of each group name
+   * @param converters : converters by semantic, type included
+   * @param customConverters : converters of the custom types, by lower case name
+   */
+  static CaptureField[] plan(Set<String> namedGroups, int[] groupIndexes, Map<String, String> namedRegexCollection,
+      Map<String, IConverter<?>> converters, Map<String, IConverter<?>> customConverters) {
+    List<CaptureField> plan = new ArrayList<>(namedGroups.size());
+    Set<String> keys = new HashSet<>();
+    Set<String> failureKeys = new HashSet<>();
+    int position = 0;
+    for (String groupName : namedGroups) {
+      int group = groupIndexes == null ? -1 : groupIndexes[position];
+      String key = groupName;
+      String id = namedRegexCollection.get(groupName);
+      if (id != null && !id.isEmpty()) {
+        key = id;
+      }
+      if (!"UNWANTED".equals(key)) {
+        String emptyKey = key;
+        IConverter<?> converter = converters.get(key);
+        Converter.Type type = Converter.Type.STRING;
+        if (converter != null) {
+          type = Converter.typeOf(key, customConverters);
+          key = Converter.extractKey(key);
+          failureKeys.add(key + "_grokfailure");
+        }
+        boolean merge = keys.contains(key) || keys.contains(emptyKey);
+        keys.add(key);
+        keys.add(emptyKey);
+        plan.add(new CaptureField(groupName, group, position, key, emptyKey, converter, type, merge));
+      }
+      position++;
+    }
+    if (!Collections.disjoint(keys, failureKeys)) {
+      // a field named like the conversion failure of another one, which is stored next to its key
+      return mergeAll(plan);
+    }
+    return plan.toArray(new CaptureField[0]);
+  }
+
+  private static CaptureField[] mergeAll(List<CaptureField> plan) {
+    CaptureField[] merged = new CaptureField[plan.size()];
+    for (int i = 0; i < merged.length; i++) {
+      CaptureField field = plan.get(i);
+      merged[i] = new CaptureField(field.groupName, field.group, field.position, field.key, field.emptyKey,
+          field.converter, field.type, true);
+    }
+    return merged;
+  }
+
+  /**
+   * Index the fields of a plan by key, for reading a single key. Keys which are also the failure key or the
+   * empty key of a field map to an empty array: whether they are present depends on the conversion of other
+   * fields, or on the groups which took part in the match.
+   *
+   * @return position in the plan of the fields of each key
+   */
+  static Map<String, int[]> index(CaptureField[] plan) {
+    Map<String, int[]> index = new HashMap<>();
+    for (int i = 0; i < plan.length; i++) {
+      int[] fields = index.getOrDefault(plan[i].key, new int[0]);
+      fields = Arrays.copyOf(fields, fields.length + 1);
+      fields[fields.length - 1] = i;
+      index.put(plan[i].key, fields);
+    }
+    for (CaptureField field : plan) {
+      if (field.failureKey != null) {
+        index.put(field.failureKey, new int[0]);
+        index.putIfAbsent(field.emptyKey, new int[0]);
+      }
+    }
+    return Collections.unmodifiableMap(index);
+  }
+}
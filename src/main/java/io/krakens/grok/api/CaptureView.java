@@ -0,0 +1,203 @@
+package io.krakens.grok.api;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code CaptureView} is a read only view of the captures of a {@link Match}, backed by the offsets of its
+ * groups. A value is extracted, cleaned and converted when its key is first read, and kept.
+ * <br>
+ * Reading a single key only decodes the fields of that key. Iterating, or reading a conversion failure,
+ * decodes every field; the view then holds the same entries, in the same order, as {@link Match#capture()}.
+ * <br>
+ * The view does not refer to any {@code Matcher}. Like a {@code Match}, it is not thread safe.
+ *
+ * @since 0.1.10
+ */
+final class CaptureView extends AbstractMap<String, Object> {
+
+  private static final Object UNREAD = new Object();
+  private static final Object ABSENT = new Object();
+
+  private final CharSequence subject;
+  private final CaptureField[] plan;
+  private final Map<String, int[]> keys;
+  private final GrokSchema schema;
+  /** Value dictionaries by field id, null when none is enabled. */
+  private final ValueDictionary[] dictionaries;
+  /**
+   * Start and end offsets of the named groups, in the order of {@link Grok#namedGroups}.
+   */
+  private final int[] groups;
+  private final boolean keepEmptyCaptures;
+  /**
+   * Decoded value of each field of the plan, {@link #UNREAD} until read.
+   */
+  private final Object[] values;
+  /**
+   * Conversion failure of each field of the plan, once decoded.
+   */
+  private final String[] failures;
+  /**
+   * Value of each key read so far, {@link #ABSENT} when the key is not captured.
+   */
+  private final Map<String, Object> read = new HashMap<>();
+  private Map<String, Object> entries;
+
+  CaptureView(CharSequence subject, Grok grok, int[] groups, boolean keepEmptyCaptures) {
+    this.subject = subject;
+    this.plan = grok.capturePlan;
+    this.keys = grok.captureKeys;
+    this.schema = grok.getSchema();
+    this.dictionaries = grok.dictionaries();
+    this.groups = groups;
+    this.keepEmptyCaptures = keepEmptyCaptures;
+    this.values = new Object[plan.length];
+    this.failures = new String[plan.length];
+    Arrays.fill(values, UNREAD);
+  }
+
+  @Override
+  public Object get(Object key) {
+    Object value = resolve(key);
+    return value == ABSENT ? null : value;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return resolve(key) != ABSENT;
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return entries().entrySet();
+  }
+
+  private Object resolve(Object key) {
+    if (entries != null) {
+      return entries.containsKey(key) ? entries.get(key) : ABSENT;
+    }
+    int[] fields = keys.get(key);
+    if (fields == null) {
+      return ABSENT;
+    }
+    if (fields.length == 0 || hasEmptyKey(fields)) {
+      // a conversion failure, or a typed group stored under the key of its semantic
+      return entries().containsKey(key) ? entries.get(key) : ABSENT;
+    }
+    Object value = read.get(key);
+    if (value == null) {
+      value = merge(fields);
+      read.put((String) key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Value of the fields of a key, a list when several of them are captured, as in {@link Match#capture()}.
+   */
+  private Object merge(int[] fields) {
+    Object value = ABSENT;
+    List<Object> list = null;
+    for (int field : fields) {
+      if (!keepEmptyCaptures && start(field) < 0) {
+        continue;
+      }
+      Object fieldValue = decode(field);
+      if (value == ABSENT) {
+        value = fieldValue;
+      } else if (list == null) {
+        list = new ArrayList<>();
+        list.add(value);
+        list.add(fieldValue);
+        value = list;
+      } else {
+        list.add(fieldValue);
+      }
+    }
+    return value;
+  }
+
+  private Map<String, Object> entries() {
+    if (entries == null) {
+      Map<String, Object> captured = new LinkedHashMap<>(plan.length * 4 / 3 + 1);
+      for (int i = 0; i < plan.length; i++) {
+        CaptureField field = plan[i];
+        if (!keepEmptyCaptures && start(i) < 0) {
+          continue;
+        }
+        Object value = decode(i);
+        if (failures[i] != null) {
+          captured.put(field.failureKey, failures[i]);
+        }
+        String key = start(i) < 0 ? field.emptyKey : field.key;
+        if (field.merge && captured.containsKey(key)) {
+          Match.merge(captured, key, value, false);
+        } else {
+          captured.put(key, value);
+        }
+      }
+      entries = Collections.unmodifiableMap(captured);
+    }
+    return entries;
+  }
+
+  /**
+   * Whether one of the fields did not take part in the match, and is stored under another key.
+   */
+  private boolean hasEmptyKey(int[] fields) {
+    for (int field : fields) {
+      if (plan[field].converter != null && start(field) < 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int start(int field) {
+    return groups[2 * plan[field].position];
+  }
+
+  private Object decode(int field) {
+    Object value = values[field];
+    if (value != UNREAD) {
+      return value;
+    }
+    int position = plan[field].position;
+    int start = groups[2 * position];
+    int end = groups[2 * position + 1];
+    if (start >= 0 && dictionaries != null && plan[field].type == Converter.Type.STRING) {
+      ValueDictionary dictionary = dictionaries[schema.fieldOf(field)];
+      if (dictionary != null) {
+        value = dictionary.intern(subject, CharSlice.unquotedStart(subject, start, end),
+            CharSlice.unquotedEnd(subject, start, end));
+        values[field] = value;
+        return value;
+      }
+    }
+    value = null;
+    if (start >= 0) {
+      if (plan[field].converter != null) {
+        value = plan[field].converter.convert(subject, start, end);
+      }
+      if (value instanceof Converter.Failure) {
+        failures[field] = value.toString();
+      }
+      if (plan[field].converter == null || value instanceof Converter.Failure) {
+        value = subject.subSequence(start, end).toString();
+      }
+      if (value instanceof String) {
+        value = Match.cleanString((String) value);
+      }
+    }
+    values[field] = value;
+    return value;
+  }
+}
@@ -0,0 +1,60 @@
+package io.krakens.grok.api;
+
+/**
+ * {@code CaptureVisitor} receives the fields captured by {@link Grok#match(CharSequence, CaptureVisitor)}
+ * one after another, as ranges of the line: no map, list or {@link Match} is built.
+ * <br>
+ * A field is given by its {@link GrokSchema} id, its key and the type of its group, and its range is the text
+ * {@link Match#capture()} would convert, unquoted for string fields. Converting the value, or forwarding
+ * the range as is, is left to the visitor.
+ * <br>
+ * By default a field captured by several groups is visited once per group, as {@link Match#capture()}
+ * lists the values. A flattened visitor gets each field once, as {@link Match#captureFlattened()}.
+ * <br>
+ * A match aborted by the {@link MatchBudget} returns false, as a line which does not match, and is told
+ * to the visitor by {@link #aborted(CharSequence)}.
+ *
+ * @since 0.1.10
+ */
+@FunctionalInterface
+public interface CaptureVisitor {
+
+  /**
+   * Receives a captured field.
+   *
+   * @param fieldId : id of the field in the {@link GrokSchema}
+   * @param key : name of the field, without type
+   * @param subject : the matched line
+   * @param start : index of the first char of the value in the line, -1 when the group did not take part
+   *     in the match
+   * @param end : index after the last char of the value in the line, -1 when the group did not take part
+   *     in the match
+   * @param type : type given by the pattern to this group of the field, {@link Converter.Type#STRING} when
+   *     it gives none
+   */
+  void visit(int fieldId, String key, CharSequence subject, int start, int end, Converter.Type type);
+
+  /**
+   * Whether a field captured by several groups is visited once, with the only group which took part in
+   * the match. Several groups taking part is then an error, as in {@link Match#captureFlattened()}.
+   */
+  default boolean isFlattened() {
+    return false;
+  }
+
+  /**
+   * Whether the groups which did not take part in the match are visited, with a range of -1.
+   */
+  default boolean isKeepEmptyCaptures() {
+    return true;
+  }
+
+  /**
+   * Receives a line whose match was aborted by the {@link MatchBudget} of the {@link Grok}: the line may
+   * match, but no field is visited. Nothing is done by default.
+   *
+   * @param subject : the line being matched
+   */
+  default void aborted(CharSequence subject) {
+  }
+}
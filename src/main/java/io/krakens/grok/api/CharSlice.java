@@ -0,0 +1,183 @@
+package io.krakens.grok.api;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@code CharSlice} is a range of the chars of a line, read in place: capturing a field as a slice copies
+ * no char. Pipelines which forward the fields of a line, for instance to a {@code Writer} with
+ * {@link #appendTo(Appendable)}, never materialize them as strings.
+ * <br>
+ * A slice has the hash code of the {@code String} of the same chars, and equals any other slice of the
+ * same chars; {@link #contentEquals(CharSequence)} compares it with a {@code String}. {@link #toString()}
+ * copies the chars. A slice refers to its line, which must not change while the slice is in use.
+ *
+ * @since 0.1.10
+ */
+public final class CharSlice implements CharSequence {
+
+  private final CharSequence source;
+  private final int start;
+  private final int end;
+  private int hash;
+
+  private CharSlice(CharSequence source, int start, int end) {
+    this.source = source;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Slice of the <tt>[start, end)</tt> range of the given source.
+   *
+   * @throws IndexOutOfBoundsException when the range is not within the source
+   */
+  public static CharSlice of(CharSequence source, int start, int end) {
+    if (start < 0 || end < start || end > source.length()) {
+      throw new IndexOutOfBoundsException("[" + start + ", " + end + ") is not within [0, " + source.length() + ")");
+    }
+    return new CharSlice(source, start, end);
+  }
+
+  /**
+   * Slice of a range without its surrounding quotes, as a capture is unquoted.
+   */
+  static CharSlice unquoted(CharSequence source, int start, int end) {
+    return new CharSlice(source, unquotedStart(source, start, end), unquotedEnd(source, start, end));
+  }
+
+  /**
+   * Start of a range without its surrounding quotes, see {@link Match#capture()}.
+   */
+  static int unquotedStart(CharSequence source, int start, int end) {
+    return !isQuoted(source, start, end) ? start : end - start <= 2 ? start : start + 1;
+  }
+
+  /**
+   * End of a range without its surrounding quotes, see {@link Match#capture()}.
+   */
+  static int unquotedEnd(CharSequence source, int start, int end) {
+    return !isQuoted(source, start, end) ? end : end - start <= 2 ? start : end - 1;
+  }
+
+  private static boolean isQuoted(CharSequence source, int start, int end) {
+    if (end <= start) {
+      return false;
+    }
+    char first = source.charAt(start);
+    if (first != source.charAt(end - 1) || (first != '"' && first != '\'')) {
+      return false;
+    }
+    for (int index = start + 1; index < end - 1; index++) {
+      if (source.charAt(index) == first) {
+        // quotes are only removed when there is no other one
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int length() {
+    return end - start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= end - start) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+    }
+    return source.charAt(start + index);
+  }
+
+  @Override
+  public CharSlice subSequence(int from, int to) {
+    if (from < 0 || to < from || to > end - start) {
+      throw new IndexOutOfBoundsException("[" + from + ", " + to + ") is not within [0, " + (end - start) + ")");
+    }
+    return new CharSlice(source, start + from, start + to);
+  }
+
+  /**
+   * Get the index of the first char of the slice in its source.
+   */
+  public int getStart() {
+    return start;
+  }
+
+  /**
+   * Get the index after the last char of the slice in its source.
+   */
+  public int getEnd() {
+    return end;
+  }
+
+  public CharSequence getSource() {
+    return source;
+  }
+
+  /**
+   * Append the chars of the slice to the given output. When both the output is a {@code Writer} and the
+   * source a {@code String}, the chars are written straight from the source.
+   *
+   * @param out : output, such as a {@code Writer} or a {@code StringBuilder}
+   * @throws IOException when the output fails
+   */
+  public void appendTo(Appendable out) throws IOException {
+    if (out instanceof Writer && source instanceof String) {
+      ((Writer) out).write((String) source, start, end - start);
+    } else if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(source, start, end);
+    } else {
+      for (int index = start; index < end; index++) {
+        out.append(source.charAt(index));
+      }
+    }
+  }
+
+  /**
+   * Whether the slice has the same chars as the given sequence, such as a {@code String}.
+   */
+  public boolean contentEquals(CharSequence other) {
+    if (other == null || other.length() != end - start) {
+      return false;
+    }
+    for (int index = 0; index < end - start; index++) {
+      if (source.charAt(start + index) != other.charAt(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    return other instanceof CharSlice && hashCode() == other.hashCode() && contentEquals((CharSlice) other);
+  }
+
+  /**
+   * Hash code of the {@code String} of the same chars.
+   */
+  @Override
+  public int hashCode() {
+    int value = hash;
+    if (value == 0) {
+      for (int index = start; index < end; index++) {
+        value = 31 * value + source.charAt(index);
+      }
+      hash = value;
+    }
+    return value;
+  }
+
+  /**
+   * Copy the chars of the slice into a {@code String}.
+   */
+  @Override
+  public String toString() {
+    return source.subSequence(start, end).toString();
+  }
+}
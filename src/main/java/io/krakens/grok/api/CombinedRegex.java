@@ -0,0 +1,99 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+
+import io.krakens.grok.api.Grok.MatchMode;
+
+/**
+ * {@code CombinedRegex} joins the named regexes of a list of {@link Grok} into a single alternation,
+ * each one wrapped in a group marking the alternative which matched.
+ * <br>
+ * The alternatives are tried in order at the beginning of the line; in {@link MatchMode#FIND} mode each one
+ * is preceded by a reluctant {@code [\s\S]*?}, so that the first alternative is searched through the whole
+ * line before the second one is tried. The result is the one of trying the {@code Grok} one after another,
+ * groups included. With the {@link LinearRegexEngine} every alternative advances in the same pass.
+ *
+ * @since 0.1.10
+ */
+final class CombinedRegex implements Serializable {
+
+  private final MatchMode matchMode;
+  private final CompiledRegex compiledRegex;
+  /**
+   * Group wrapping the named regex of each {@code Grok}, the groups of the named regex follow it.
+   */
+  private final int[] firstGroups;
+  private transient volatile MatcherPool matcherPool;
+
+  /**
+   * Combine the given {@code Grok}, which must have the same match mode.
+   *
+   * @throws IllegalArgumentException when a named regex refers to its own groups, or can't be analyzed
+   */
+  CombinedRegex(String[] ids, Grok[] members, RegexEngine regexEngine) {
+    matchMode = members[0].getMatchMode();
+    firstGroups = new int[members.length];
+    StringBuilder regex = new StringBuilder("(?:");
+    int group = 0;
+    for (int i = 0; i < members.length; i++) {
+      Grok member = members[i];
+      if (member.getMatchMode() != matchMode) {
+        throw new IllegalArgumentException("Patterns of a combined set should have the same match mode");
+      }
+      String unnamed = member.namedGroupIndexes == null ? null : GrokUtils.unnameGroups(member.getNamedRegex());
+      if (unnamed == null) {
+        throw new IllegalArgumentException("Pattern '" + ids[i] + "' can't be combined, it refers to its own groups");
+      }
+      if (i > 0) {
+        regex.append('|');
+      }
+      if (matchMode == MatchMode.FIND) {
+        regex.append("[\\s\\S]*?");
+      }
+      regex.append('(').append(unnamed).append(')');
+      firstGroups[i] = ++group;
+      group += member.groupCount();
+    }
+    regex.append(')');
+    compiledRegex = regexEngine.compile(regex.toString());
+  }
+
+  String getRegex() {
+    return compiledRegex.getRegex();
+  }
+
+  /**
+   * Applies the combined regex to the <tt>[start, end)</tt> range of the text.
+   *
+   * @return the position of the {@code Grok} which matched, -1 when none did
+   */
+  int match(RegexMatcher matcher, CharSequence text, int start, int end) {
+    boolean found = matchMode == MatchMode.MATCHES
+        ? matcher.matches(text, start, end)
+        : matcher.lookingAt(text, start, end);
+    if (found) {
+      for (int i = 0; i < firstGroups.length; i++) {
+        if (matcher.start(firstGroups[i]) >= 0) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Group wrapping the named regex of the {@code Grok} at the given position.
+   */
+  int firstGroup(int member) {
+    return firstGroups[member];
+  }
+
+  MatcherPool getMatcherPool() {
+    MatcherPool pool = matcherPool;
+    if (pool == null) {
+      pool = new MatcherPool(compiledRegex);
+      matcherPool = pool;
+    }
+    return pool;
+  }
+}
@@ -0,0 +1,28 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+
+/**
+ * {@code CompiledRegex} is a regex compiled by a {@link RegexEngine}. It is immutable and thread safe.
+ * <br>
+ * Capturing groups are numbered as in {@code java.util.regex.Pattern}, group 0 being the whole match.
+ *
+ * @since 0.1.10
+ */
+public interface CompiledRegex extends Serializable {
+
+  /**
+   * Get the regex this was compiled from.
+   */
+  String getRegex();
+
+  /**
+   * Get the number of capturing groups, group 0 excluded.
+   */
+  int groupCount();
+
+  /**
+   * Creates a new matcher, to be used by one thread at a time.
+   */
+  RegexMatcher matcher();
+}
@@ -8,16 +8,21 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAccessor;
 import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.LongFunction;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import io.krakens.grok.api.Match.ParseStatus;
+
 /**
  * Convert String argument to the right type.
  *
@@ -25,15 +30,20 @@ import java.util.stream.Collectors;
 public class Converter {
 
   public enum Type {
-    BYTE(Byte::valueOf),
-    BOOLEAN(Boolean::valueOf),
-    SHORT(Short::valueOf),
-    INT(Integer::valueOf, "integer"),
-    LONG(Long::valueOf),
-    FLOAT(Float::valueOf),
-    DOUBLE(Double::valueOf),
+    BYTE(new IntegerConverter<>(Byte.MIN_VALUE, Byte.MAX_VALUE, Byte::valueOf, value -> (byte) value)),
+    BOOLEAN(new BooleanConverter()),
+    SHORT(new IntegerConverter<>(Short.MIN_VALUE, Short.MAX_VALUE, Short::valueOf, value -> (short) value)),
+    INT(new IntegerConverter<>(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer::valueOf, value -> (int) value),
+        "integer"),
+    LONG(new IntegerConverter<>(Long.MIN_VALUE, Long.MAX_VALUE, Long::valueOf, value -> value)),
+    FLOAT(new DecimalConverter<>(Float::valueOf, Numbers::parseFloat)),
+    DOUBLE(new DecimalConverter<>(Double::valueOf, Numbers::parseDouble)),
     DATETIME(new DateConverter(), "date"),
-    STRING(v -> v, "text");
+    STRING(v -> v, "text"),
+    /**
+     * Type of the fields converted by a converter registered on the {@link GrokCompiler}, not a type name.
+     */
+    CUSTOM(v -> v);
 
     public final IConverter<? extends Object> converter;
     public final List<String> aliases;
@@ -48,6 +58,7 @@ public class Converter {
 
   private static final Map<String, Type> TYPES =
       Arrays.stream(Type.values())
+          .filter(type -> type != Type.CUSTOM)
           .collect(Collectors.toMap(t -> t.name().toLowerCase(), t -> t));
 
   private static final Map<String, Type> TYPE_ALIASES =
@@ -55,8 +66,11 @@ public class Converter {
           .flatMap(type -> type.aliases.stream().map(alias -> new AbstractMap.SimpleEntry<>(alias, type)))
           .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
-  private static Type getType(String key) {
+  private static Type getType(String key, Map<String, IConverter<?>> customConverters) {
     key = key.toLowerCase();
+    if (customConverters.containsKey(key)) {
+      return Type.CUSTOM;
+    }
     Type type = TYPES.getOrDefault(key, TYPE_ALIASES.get(key));
     if (type == null) {
       throw new IllegalArgumentException("Invalid data type :" + key);
@@ -64,13 +78,35 @@ public class Converter {
     return type;
   }
 
+  /**
+   * Whether a type name is the one of a type built in, or one of its aliases.
+   */
+  static boolean isBuiltIn(String type) {
+    String key = type.toLowerCase();
+    return TYPES.containsKey(key) || TYPE_ALIASES.containsKey(key);
+  }
+
   public static Map<String, IConverter<? extends Object>>
       getConverters(Collection<String> groupNames, Object... params) {
+    return getConverters(groupNames, Collections.emptyMap(), params);
+  }
+
+  /**
+   * Get the converters of the typed semantics, the custom types being read from the given converters.
+   *
+   * @param groupNames : semantics, such as {@code client:ipv4}
+   * @param customConverters : converters of the custom types, by lower case name
+   * @param params : parameters of {@link IConverter#newConverter(String, Object...)}
+   */
+  static Map<String, IConverter<? extends Object>> getConverters(Collection<String> groupNames,
+      Map<String, IConverter<?>> customConverters, Object... params) {
     return groupNames.stream()
         .filter(Converter::containsDelimiter)
         .collect(Collectors.toMap(Function.identity(), key -> {
           String[] list = splitGrokPattern(key);
-          IConverter<? extends Object> converter = getType(list[1]).converter;
+          Type type = getType(list[1], customConverters);
+          IConverter<? extends Object> converter = type == Type.CUSTOM
+              ? customConverters.get(list[1].toLowerCase()) : type.converter;
           if (list.length == 3) {
             converter = converter.newConverter(list[2], params);
           }
@@ -79,15 +115,33 @@ public class Converter {
   }
 
   public static Map<String, Type> getGroupTypes(Collection<String> groupNames) {
+    return getGroupTypes(groupNames, Collections.emptyMap());
+  }
+
+  static Map<String, Type> getGroupTypes(Collection<String> groupNames, Map<String, IConverter<?>> customConverters) {
     return groupNames.stream()
         .filter(Converter::containsDelimiter)
         .map(Converter::splitGrokPattern)
         .collect(Collectors.toMap(
             l -> l[0],
-            l -> getType(l[1])
+            l -> getType(l[1], customConverters)
         ));
   }
 
+  /**
+   * Get the type of a semantic such as {@code status:int}, {@link Type#STRING} when it has none.
+   *
+   * @param semantic : semantic of a group
+   * @param customConverters : converters of the custom types, by lower case name
+   */
+  static Type typeOf(String semantic, Map<String, IConverter<?>> customConverters) {
+    if (!containsDelimiter(semantic)) {
+      return Type.STRING;
+    }
+    String[] list = splitGrokPattern(semantic);
+    return list.length > 1 ? getType(list[1], customConverters) : Type.STRING;
+  }
+
   public static String extractKey(String key) {
     return splitGrokPattern(key)[0];
   }
@@ -100,33 +154,264 @@ public class Converter {
     return SPLITTER.split(string, 3);
   }
 
-  interface IConverter<T> {
+  /**
+   * Converter of the values of a type, built in or registered with
+   * {@link GrokCompiler#registerConverter(String, IConverter)}.
+   */
+  public interface IConverter<T> {
 
     T convert(String value);
 
+    /**
+     * Convert the <tt>[start, end)</tt> range of a text. A failure is returned as a {@link Failure}, not
+     * thrown: the numeric converters parse the range in place, and neither create a string nor an exception.
+     * By default, the range is copied and given to {@link #convert(String)}.
+     *
+     * @param text : text, such as a matched line
+     * @param start : index of the first char of the value
+     * @param end : index after the last char of the value
+     * @return the converted value, or a {@link Failure} when the range can't be converted
+     */
+    default Object convert(CharSequence text, int start, int end) {
+      try {
+        return convert(text.subSequence(start, end).toString());
+      } catch (Exception e) {
+        return new Failure(e.toString());
+      }
+    }
+
+    /**
+     * Converter of a type given with a parameter, such as the format of {@code %{DATA:when;date;yyyy/MM/dd}}.
+     *
+     * @param param : parameter given after the type in the pattern
+     * @param params : parameters of the compilation, the default time zone
+     */
     default IConverter<T> newConverter(String param, Object... params) {
       return this;
     }
   }
 
+  /**
+   * Converter whose values are longs, such as an IPv4 address or epoch milliseconds. Besides their boxed
+   * values, the longs are read without boxing by {@link GrokRecord#getLong(int)}, {@link Match#getLong(String)}
+   * and the long or int properties bound by a {@link GrokBinder}.
+   */
+  public interface ILongConverter extends IConverter<Long> {
+
+    /**
+     * Whether the <tt>[start, end)</tt> range of the text is a valid value.
+     */
+    boolean accepts(CharSequence text, int start, int end);
+
+    /**
+     * Convert a range accepted by {@link #accepts(CharSequence, int, int)}.
+     */
+    long toLong(CharSequence text, int start, int end);
+
+    @Override
+    default Long convert(String value) {
+      if (!accepts(value, 0, value.length())) {
+        throw new IllegalArgumentException("Invalid value: \"" + value + "\"");
+      }
+      return toLong(value, 0, value.length());
+    }
+
+    @Override
+    default Object convert(CharSequence text, int start, int end) {
+      if (!accepts(text, start, end)) {
+        return new Failure("java.lang.IllegalArgumentException: Invalid value: \"" + text.subSequence(start, end)
+            + "\"");
+      }
+      return toLong(text, start, end);
+    }
+  }
+
+  /**
+   * Failed conversion of a range, see {@link IConverter#convert(CharSequence, int, int)}. Its string is the
+   * description stored under the {@code _grokfailure} key of the field.
+   */
+  public static final class Failure {
+
+    private final String message;
+
+    /**
+     * Failure described by the given message, such as {@code java.lang.NumberFormatException: For input string: "-"}.
+     */
+    public Failure(String message) {
+      this.message = message;
+    }
+
+    static Failure forInputString(CharSequence text, int start, int end) {
+      return new Failure("java.lang.NumberFormatException: For input string: \""
+          + text.subSequence(start, end) + "\"");
+    }
+
+    @Override
+    public String toString() {
+      return message;
+    }
+  }
+
+  /**
+   * Converter of decimal integers bounded by the range of their type, parsed in place.
+   */
+  static final class IntegerConverter<T> implements IConverter<T> {
+
+    private final long min;
+    private final long max;
+    private final Function<String, T> parser;
+    private final LongFunction<T> boxer;
+
+    IntegerConverter(long min, long max, Function<String, T> parser, LongFunction<T> boxer) {
+      this.min = min;
+      this.max = max;
+      this.parser = parser;
+      this.boxer = boxer;
+    }
+
+    @Override
+    public T convert(String value) {
+      return parser.apply(value);
+    }
+
+    @Override
+    public Object convert(CharSequence text, int start, int end) {
+      ParseStatus status = Numbers.checkLong(text, start, end, min, max);
+      if (status == ParseStatus.PARSED) {
+        return boxer.apply(Numbers.parseLong(text, start, end));
+      }
+      if (status == ParseStatus.INVALID && !isAscii(text, start, end)) {
+        // digits of other scripts, as accepted by the parser of the type
+        return IConverter.super.convert(text, start, end);
+      }
+      if (status == ParseStatus.OVERFLOW && max < Integer.MAX_VALUE
+          && Numbers.checkLong(text, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE) == ParseStatus.PARSED) {
+        // a byte or a short is first parsed as an int
+        return new Failure("java.lang.NumberFormatException: Value out of range. Value:\""
+            + text.subSequence(start, end) + "\" Radix:10");
+      }
+      return Failure.forInputString(text, start, end);
+    }
+  }
+
+  /**
+   * Converter of decimal numbers such as {@code -12.5e3}, parsed in place.
+   */
+  static final class DecimalConverter<T> implements IConverter<T> {
+
+    private final Function<String, T> parser;
+    private final RangeParser<T> rangeParser;
+
+    DecimalConverter(Function<String, T> parser, RangeParser<T> rangeParser) {
+      this.parser = parser;
+      this.rangeParser = rangeParser;
+    }
+
+    @Override
+    public T convert(String value) {
+      return parser.apply(value);
+    }
+
+    @Override
+    public Object convert(CharSequence text, int start, int end) {
+      if (Numbers.checkDouble(text, start, end) != ParseStatus.INVALID) {
+        // out of range numbers are infinite, as with the parser of the type
+        return rangeParser.parse(text, start, end);
+      }
+      if (start == end) {
+        return new Failure("java.lang.NumberFormatException: empty String");
+      }
+      if (isOtherDecimal(text, start, end)) {
+        // NaN, Infinity, hexadecimal and suffixed numbers, or surrounding spaces
+        return IConverter.super.convert(text, start, end);
+      }
+      return Failure.forInputString(text, start, end);
+    }
+  }
+
+  /**
+   * Parser of a range checked by {@link Numbers#checkDouble}.
+   */
+  @FunctionalInterface
+  interface RangeParser<T> {
+
+    T parse(CharSequence text, int start, int end);
+  }
+
+  /**
+   * Converter of booleans as {@link Boolean#valueOf(String)}: true when the value is {@code true}, ignoring case.
+   */
+  static final class BooleanConverter implements IConverter<Boolean> {
+
+    @Override
+    public Boolean convert(String value) {
+      return Boolean.valueOf(value);
+    }
+
+    @Override
+    public Object convert(CharSequence text, int start, int end) {
+      return Boolean.valueOf(Numbers.parseBoolean(text, start, end));
+    }
+  }
+
+  private static boolean isAscii(CharSequence text, int start, int end) {
+    for (int index = start; index < end; index++) {
+      if (text.charAt(index) > 127) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether the range may be a number only {@link Double#valueOf(String)} reads: surrounded by spaces, NaN,
+   * Infinity, hexadecimal or with a type suffix.
+   */
+  private static boolean isOtherDecimal(CharSequence text, int start, int end) {
+    char last = text.charAt(end - 1);
+    if (text.charAt(start) <= ' ' || last <= ' ' || last == 'f' || last == 'F' || last == 'd' || last == 'D') {
+      return true;
+    }
+    int position = text.charAt(start) == '-' || text.charAt(start) == '+' ? start + 1 : start;
+    if (position == end) {
+      return false;
+    }
+    char first = text.charAt(position);
+    return first == 'N' || first == 'I' || (first == '0' && position + 1 < end
+        && (text.charAt(position + 1) == 'x' || text.charAt(position + 1) == 'X'));
+  }
+
 
   static class DateConverter implements IConverter<Instant> {
 
     private final DateTimeFormatter formatter;
     private final ZoneId timeZone;
+    /**
+     * Parser of the common layouts, tried before the formatter, null when the format has none.
+     */
+    private final TimestampParser parser;
 
     public DateConverter() {
       this.formatter = DateTimeFormatter.ISO_DATE_TIME;
       this.timeZone = ZoneOffset.UTC;
+      this.parser = TimestampParser.isoDateTime(timeZone);
     }
 
-    private DateConverter(DateTimeFormatter formatter, ZoneId timeZone) {
+    private DateConverter(DateTimeFormatter formatter, ZoneId timeZone, TimestampParser parser) {
       this.formatter = formatter;
       this.timeZone = timeZone;
+      this.parser = parser;
     }
 
     @Override
     public Instant convert(String value) {
+      Instant instant = parser == null ? null : parser.parse(value, 0, value.length());
+      if (instant != null) {
+        return instant;
+      }
+      if (formatter == null) {
+        throw new DateTimeParseException("Text '" + value + "' could not be parsed as an epoch", value, 0);
+      }
       TemporalAccessor dt = formatter
           .parseBest(value.trim(), ZonedDateTime::from, LocalDateTime::from, OffsetDateTime::from, Instant::from,
               LocalDate::from);
@@ -145,12 +430,25 @@ public class Converter {
       }
     }
 
+    @Override
+    public Object convert(CharSequence text, int start, int end) {
+      Instant instant = parser == null ? null : parser.parse(text, start, end);
+      return instant != null ? instant : IConverter.super.convert(text, start, end);
+    }
+
+    /**
+     * Converter of the given format, {@code UNIX} for epoch seconds and {@code UNIX_MS} for epoch milliseconds
+     * or a {@code DateTimeFormatter} pattern. ISO 8601, Apache access log and syslog dates are read without
+     * the formatter.
+     */
     @Override
     public DateConverter newConverter(String param, Object... params) {
       if (!(params.length == 1 && params[0] instanceof ZoneId)) {
         throw new IllegalArgumentException("Invalid parameters");
       }
-      return new DateConverter(DateTimeFormatter.ofPattern(param), (ZoneId) params[0]);
+      ZoneId zone = (ZoneId) params[0];
+      return new DateConverter(TimestampParser.isEpoch(param) ? null : DateTimeFormatter.ofPattern(param), zone,
+          TimestampParser.of(param, zone));
     }
   }
 }
@@ -40,11 +40,12 @@ public class Discovery {
    */
   private Map<String, Grok> sort(Map<String, Grok> groks) {
 
-    List<Grok> groky = new ArrayList<Grok>(groks.values());
+    List<Entry<String, Grok>> groky = new ArrayList<Entry<String, Grok>>(groks.entrySet());
     Map<String, Grok> grokMap = new LinkedHashMap<String, Grok>();
-    Collections.sort(groky, new Comparator<Grok>() {
-      public int compare(Grok g1, Grok g2) {
-        return (this.complexity(g1.getNamedRegex()) < this.complexity(g2.getNamedRegex())) ? 1 : 0;
+    Collections.sort(groky, new Comparator<Entry<String, Grok>>() {
+      public int compare(Entry<String, Grok> g1, Entry<String, Grok> g2) {
+        return (this.complexity(g1.getValue().getNamedRegex()) < this.complexity(g2.getValue().getNamedRegex()))
+            ? 1 : 0;
       }
 
       private int complexity(String expandedPattern) {
@@ -55,8 +56,8 @@ public class Discovery {
       }
     });
 
-    for (Grok grok : groky) {
-      grokMap.put(grok.getSaved_pattern(), grok);
+    for (Entry<String, Grok> grok : groky) {
+      grokMap.put(grok.getKey(), grok.getValue());
     }
     return grokMap;
 
@@ -103,7 +104,6 @@ public class Discovery {
 
       try {
         Grok grok = compiler.compile("%{" + key + "}");
-        grok.setSaved_pattern(key);
         groks.put(key, grok);
       } catch (Exception e) {
         // Add logger
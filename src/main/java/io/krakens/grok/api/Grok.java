@@ -1,15 +1,24 @@
 package io.krakens.grok.api;
 
+import static java.lang.String.format;
+
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import io.krakens.grok.api.Converter.IConverter;
+import io.krakens.grok.api.exception.GrokException;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -19,10 +28,35 @@ import org.apache.commons.lang3.StringUtils;
  * {@code Grok} is simple API that allows you to easily parse logs
  * and other files (single line). With {@code Grok},
  * you can turn unstructured log and event data into structured data.
+ * <br>
+ * Once the cache of its {@link GrokCompiler} is enabled, a {@code Grok} is shared by every caller compiling
+ * the same pattern. It therefore never changes once built: its collections are read only, and
+ * {@link #withMatchBudget(MatchBudget)} or {@link #withInternedValues(String, int)} configure a copy.
  *
  * @since 0.0.1
  */
 public class Grok implements Serializable {
+
+  /**
+   * How the named regex is applied to the text.
+   *
+   * @since 0.1.10
+   */
+  public enum MatchMode {
+    /**
+     * Search the pattern anywhere in the text, with {@link Matcher#find()}.
+     */
+    FIND,
+    /**
+     * Match the pattern at the beginning of the text, with {@link Matcher#lookingAt()}.
+     */
+    LOOKING_AT,
+    /**
+     * Match the pattern against the whole text, with {@link Matcher#matches()}.
+     */
+    MATCHES
+  }
+
   /**
    * Named regex of the originalGrokPattern.
    */
@@ -37,25 +71,81 @@ public class Grok implements Serializable {
    */
   private final String originalGrokPattern;
   /**
-   * Pattern of the namedRegex.
+   * The namedRegex, compiled by the regex engine.
    */
-  private final Pattern compiledNamedRegex;
+  private final CompiledRegex compiledRegex;
+  /**
+   * Pattern of the namedRegex, to rebuild a {@code Matcher}. Compiled on first use when the regex engine
+   * is not {@code java.util.regex}.
+   */
+  private transient volatile Pattern compiledNamedRegex;
+
+  private final MatchMode matchMode;
 
   /**
-   * {@code Grok} patterns definition.
+   * {@code Grok} patterns definition, shared with the other {@code Grok} of the same compiler.
    */
   private final Map<String, String> grokPatternDefinition;
 
+  /**
+   * Names of the groups of the named regex, in their order, read only.
+   */
   public final Set<String> namedGroups;
 
+  /**
+   * Group number of each of the {@link #namedGroups}, in the same order,
+   * null when they can't be resolved from the named regex.
+   */
+  final int[] namedGroupIndexes;
+
+  /**
+   * Literals every match contains, see {@link #getRequiredLiterals()}.
+   */
+  private final List<String> requiredLiterals;
+
+  /**
+   * Type of each typed semantic, read only.
+   */
   public final Map<String, Converter.Type> groupTypes;
 
+  /**
+   * Converter of each typed semantic, type included, read only.
+   */
   public final Map<String, IConverter<? extends Object>> converters;
 
   /**
-   * {@code Grok} discovery.
+   * Key, group number and converter of every capture, resolved from the above when the {@code Grok} is built.
+   */
+  final CaptureField[] capturePlan;
+
+  /**
+   * Fields of the {@link #capturePlan} by key, see {@link CaptureField#index(CaptureField[])}.
    */
-  private Discovery disco;
+  final Map<String, int[]> captureKeys;
+
+  private final GrokSchema schema;
+
+  /**
+   * {@code Matcher} reused between matches, created on first use.
+   */
+  private transient volatile MatcherPool matcherPool;
+
+  /**
+   * Bound of the work of a match, none by default.
+   */
+  private final MatchBudget matchBudget;
+
+  private final LongAdder abortedMatchCount = new LongAdder();
+
+  /**
+   * Binders of this {@code Grok}, by bound class.
+   */
+  private transient volatile Map<Class<?>, GrokBinder<?>> binders;
+
+  /**
+   * Value dictionaries by field id, null when none is enabled.
+   */
+  private final transient ValueDictionary[] dictionaries;
 
   /** only use in grok discovery. */
   private String savedPattern = "";
@@ -65,33 +155,186 @@ public class Grok implements Serializable {
       Map<String, String> namedRegexCollection,
       Map<String, String> patternDefinitions,
       ZoneId defaultTimeZone) {
+    this(pattern, namedRegex, namedRegexCollection, patternDefinitions, defaultTimeZone, MatchMode.FIND);
+  }
+
+  /**
+   * Create a new {@code Grok} applying its named regex with the given mode.
+   */
+  public Grok(String pattern,
+      String namedRegex,
+      Map<String, String> namedRegexCollection,
+      Map<String, String> patternDefinitions,
+      ZoneId defaultTimeZone,
+      MatchMode matchMode) {
+    this(pattern, namedRegex, namedRegexCollection, patternDefinitions, defaultTimeZone, matchMode,
+        JdkRegexEngine.INSTANCE);
+  }
+
+  /**
+   * Create a new {@code Grok} applying its named regex with the given mode, compiled by the given engine.
+   *
+   * @throws IllegalArgumentException when the named regex is not supported by the engine
+   */
+  public Grok(String pattern,
+      String namedRegex,
+      Map<String, String> namedRegexCollection,
+      Map<String, String> patternDefinitions,
+      ZoneId defaultTimeZone,
+      MatchMode matchMode,
+      RegexEngine regexEngine) {
+    this(pattern, namedRegex, namedRegexCollection, patternDefinitions, defaultTimeZone, matchMode, regexEngine,
+        Collections.emptyMap());
+  }
+
+  /**
+   * Create a new {@code Grok} whose custom types are converted by the given converters.
+   *
+   * @param customConverters : converters of the custom types, by lower case name, see
+   *     {@link GrokCompiler#registerConverter(String, IConverter)}
+   * @throws IllegalArgumentException when the named regex is not supported by the engine, or a type is unknown
+   */
+  public Grok(String pattern,
+      String namedRegex,
+      Map<String, String> namedRegexCollection,
+      Map<String, String> patternDefinitions,
+      ZoneId defaultTimeZone,
+      MatchMode matchMode,
+      RegexEngine regexEngine,
+      Map<String, IConverter<?>> customConverters) {
     this.originalGrokPattern = pattern;
+    this.matchMode = Objects.requireNonNull(matchMode);
     this.namedRegex = namedRegex;
-    this.compiledNamedRegex = Pattern.compile(namedRegex);
-    this.namedRegexCollection = namedRegexCollection;
-    this.namedGroups = GrokUtils.getNameGroups(namedRegex);
-    this.groupTypes = Converter.getGroupTypes(namedRegexCollection.values());
-    this.converters = Converter.getConverters(namedRegexCollection.values(), defaultTimeZone);
+    this.compiledRegex = regexEngine.compile(namedRegex);
+    if (compiledRegex instanceof JdkRegexEngine.JdkCompiledRegex) {
+      this.compiledNamedRegex = ((JdkRegexEngine.JdkCompiledRegex) compiledRegex).getPattern();
+    }
+    this.namedRegexCollection = Collections.unmodifiableMap(namedRegexCollection);
+    this.namedGroups = Collections.unmodifiableSet(GrokUtils.getNameGroups(namedRegex));
+    this.namedGroupIndexes = getNamedGroupIndexes(namedGroups, namedRegex, compiledRegex.groupCount());
+    if (namedGroupIndexes == null && compiledNamedRegex == null) {
+      // only java.util.regex can find the groups by name
+      throw new IllegalArgumentException("Can't number the named groups of " + namedRegex
+          + ", compile it with the " + JdkRegexEngine.class.getSimpleName());
+    }
+    this.requiredLiterals = Collections.unmodifiableList(RequiredLiterals.of(namedRegex));
+    this.groupTypes = Collections.unmodifiableMap(
+        Converter.getGroupTypes(namedRegexCollection.values(), customConverters));
+    this.converters = Collections.unmodifiableMap(
+        Converter.getConverters(namedRegexCollection.values(), customConverters, defaultTimeZone));
     this.grokPatternDefinition = patternDefinitions;
+    this.capturePlan = CaptureField.plan(namedGroups, namedGroupIndexes, namedRegexCollection, converters,
+        customConverters);
+    this.captureKeys = CaptureField.index(capturePlan);
+    this.schema = GrokSchema.of(capturePlan, groupTypes);
+    this.matchBudget = null;
+    this.dictionaries = null;
+  }
+
+  /**
+   * Copy of the given {@code Grok} with another match budget and other value dictionaries, sharing its
+   * compiled regex and its capture plan.
+   */
+  private Grok(Grok grok, MatchBudget matchBudget, ValueDictionary[] dictionaries) {
+    this.originalGrokPattern = grok.originalGrokPattern;
+    this.matchMode = grok.matchMode;
+    this.namedRegex = grok.namedRegex;
+    this.compiledRegex = grok.compiledRegex;
+    this.compiledNamedRegex = grok.compiledNamedRegex;
+    this.namedRegexCollection = grok.namedRegexCollection;
+    this.namedGroups = grok.namedGroups;
+    this.namedGroupIndexes = grok.namedGroupIndexes;
+    this.requiredLiterals = grok.requiredLiterals;
+    this.groupTypes = grok.groupTypes;
+    this.converters = grok.converters;
+    this.grokPatternDefinition = grok.grokPatternDefinition;
+    this.capturePlan = grok.capturePlan;
+    this.captureKeys = grok.captureKeys;
+    this.schema = grok.schema;
+    this.dictionaries = dictionaries;
+    this.savedPattern = grok.savedPattern;
+    this.matchBudget = matchBudget;
   }
 
+  private static int[] getNamedGroupIndexes(Set<String> namedGroups, String namedRegex, int groupCount) {
+    Map<String, Integer> indexes = GrokUtils.getNameGroupIndexes(namedRegex);
+    if (indexes == null || !new ArrayList<>(indexes.keySet()).equals(new ArrayList<>(namedGroups))) {
+      return null;
+    }
+    int[] groupIndexes = new int[indexes.size()];
+    int next = 0;
+    for (int index : indexes.values()) {
+      if (index > groupCount) {
+        return null;
+      }
+      groupIndexes[next++] = index;
+    }
+    return groupIndexes;
+  }
+
+  /**
+   * Get the name given by {@link #setSaved_pattern(String)}.
+   *
+   * @deprecated a {@code Grok} from the compiler cache is shared, see {@link #setSaved_pattern(String)}
+   */
+  @Deprecated
   public String getSaved_pattern() {
     return savedPattern;
   }
 
+  /**
+   * Name this {@code Grok}, once used by {@link Discovery}.
+   *
+   * @deprecated every caller sharing this {@code Grok}, see {@link Grok}, would see the name: keep the names
+   *     next to the {@code Grok} instead, in a map for instance
+   */
+  @Deprecated
   public void setSaved_pattern(String savedpattern) {
     this.savedPattern = savedpattern;
   }
 
   /**
-   * Get the current map of {@code Grok} pattern.
+   * Get the map of {@code Grok} pattern this {@code Grok} was compiled with.
    *
-   * @return Patterns (name, regular expression)
+   * @return a copy of the patterns (name, regular expression), changing it does not change this {@code Grok}
    */
   public Map<String, String> getPatterns() {
+    return new HashMap<>(grokPatternDefinition);
+  }
+
+  /**
+   * Pattern definitions this {@code Grok} was compiled with, shared with the other {@code Grok} of the
+   * same compiler.
+   */
+  Map<String, String> patternDefinitions() {
     return grokPatternDefinition;
   }
 
+  /**
+   * Estimates the heap retained by this {@code Grok}: regex, compiled pattern, group names and converters.
+   * The pattern definitions shared with the compiler are not counted, the inline ones and the definitions
+   * given to the constructor are.
+   *
+   * @return estimated size in bytes
+   */
+  public long estimateRetainedSize() {
+    long size = SizeEstimator.object(10)
+        + SizeEstimator.string(originalGrokPattern)
+        + SizeEstimator.string(namedRegex)
+        + (compiledRegex instanceof LinearProgram
+            ? ((LinearProgram) compiledRegex).estimateRetainedSize() : SizeEstimator.pattern(namedRegex))
+        + SizeEstimator.map(namedRegexCollection)
+        + SizeEstimator.entries(namedGroups.size()) + SizeEstimator.strings(namedGroups)
+        + SizeEstimator.entries(groupTypes.size()) + SizeEstimator.strings(groupTypes.keySet())
+        + SizeEstimator.entries(converters.size()) + converters.size() * SizeEstimator.object(2);
+    if (grokPatternDefinition instanceof PatternDefinitions) {
+      size += SizeEstimator.object(3) + SizeEstimator.map(((PatternDefinitions) grokPatternDefinition).getOverlay());
+    } else {
+      size += SizeEstimator.map(grokPatternDefinition);
+    }
+    return size;
+  }
+
   /**
    * Get the named regex from the {@code Grok} pattern. <br>
    * @return named regex
@@ -100,6 +343,100 @@ public class Grok implements Serializable {
     return namedRegex;
   }
 
+  /**
+   * Get the literal strings found in every match of the named regex, for instance {@code " HTTP/"}.
+   * A line missing one of them can't match. The list may be empty, for instance when the named regex
+   * starts with an alternation.
+   *
+   * @return required literals, the longest first
+   */
+  public List<String> getRequiredLiterals() {
+    return requiredLiterals;
+  }
+
+  /**
+   * Get the fields captured by this {@code Grok}, and their ids in a {@link GrokRecord}.
+   *
+   * @return schema of the captures
+   */
+  public GrokSchema getSchema() {
+    return schema;
+  }
+
+  /**
+   * Create a record to be filled by {@link #match(CharSequence, GrokRecord)}, one per thread.
+   *
+   * @return empty record
+   */
+  public GrokRecord newRecord() {
+    return new GrokRecord(this);
+  }
+
+  /**
+   * Get the binder of the captures of this {@code Grok} to the given class, resolved on first use and
+   * kept for the next calls. See {@link GrokBinder} for the supported classes.
+   *
+   * @param type : bean, record or class whose constructor parameters are named after the fields
+   * @return binder creating instances of the class
+   * @throws IllegalArgumentException when the class has no usable constructor, or can't be accessed
+   */
+  @SuppressWarnings("unchecked")
+  public <T> GrokBinder<T> binder(Class<T> type) {
+    Map<Class<?>, GrokBinder<?>> current = binders;
+    if (current == null) {
+      synchronized (this) {
+        current = binders;
+        if (current == null) {
+          current = new ConcurrentHashMap<>();
+          binders = current;
+        }
+      }
+    }
+    return (GrokBinder<T>) current.computeIfAbsent(type, key -> new GrokBinder<>(this, key));
+  }
+
+  /**
+   * Get a {@code Grok} sharing the strings of the values of a field: its captures give the same {@code String}
+   * instance for every occurrence of a value, as long as it stays in the dictionary of the field. Worth it for
+   * fields taking few distinct values, such as a verb, a status or a log level.
+   * <br>
+   * This {@code Grok} is left as is, see {@link Grok} about shared instances. The copy keeps the match budget
+   * and the other dictionaries of this {@code Grok}, and gets a new dictionary for the field.
+   *
+   * @param field : name of the field, without type
+   * @param maximumSize : maximum number of values kept, see {@link ValueDictionary}
+   * @return a {@code Grok} of the same pattern interning the values of the field, see
+   *     {@link #getValueDictionary(String)} for its statistics
+   * @throws IllegalArgumentException when the pattern does not capture the field, or the size is not positive
+   */
+  public Grok withInternedValues(String field, int maximumSize) {
+    int id = schema.getId(field);
+    if (id < 0) {
+      throw new IllegalArgumentException("No field " + field + " in " + schema);
+    }
+    ValueDictionary[] updated = dictionaries == null ? new ValueDictionary[schema.size()] : dictionaries.clone();
+    updated[id] = new ValueDictionary(field, maximumSize);
+    return new Grok(this, matchBudget, updated);
+  }
+
+  /**
+   * Get the value dictionary of a field.
+   *
+   * @param field : name of the field, without type
+   * @return dictionary of the field, null when it was not enabled by {@link #withInternedValues(String, int)}
+   */
+  public ValueDictionary getValueDictionary(String field) {
+    int id = schema.getId(field);
+    return id < 0 || dictionaries == null ? null : dictionaries[id];
+  }
+
+  /**
+   * Value dictionaries by field id, null when none is enabled.
+   */
+  ValueDictionary[] dictionaries() {
+    return dictionaries;
+  }
+
   /**
    * Original grok pattern used to compile to the named regex.
    *
@@ -155,26 +492,374 @@ public class Grok implements Serializable {
     return matched;
   }
 
+  /**
+   * Number of groups of the named regex, named or not.
+   */
+  int groupCount() {
+    return compiledRegex.groupCount();
+  }
+
+  /**
+   * How the named regex is applied by {@link #match(CharSequence)}.
+   */
+  public MatchMode getMatchMode() {
+    return matchMode;
+  }
+
+  private boolean apply(Matcher matcher) {
+    switch (matchMode) {
+      case MATCHES:
+        return matcher.matches();
+      case LOOKING_AT:
+        return matcher.lookingAt();
+      default:
+        return matcher.find();
+    }
+  }
+
+  private boolean apply(RegexMatcher matcher, CharSequence text, int start, int end) {
+    switch (matchMode) {
+      case MATCHES:
+        return matcher.matches(text, start, end);
+      case LOOKING_AT:
+        return matcher.lookingAt(text, start, end);
+      default:
+        return matcher.find(text, start, end);
+    }
+  }
+
+  /**
+   * Get a {@code Grok} bounding the work of each of its matches: a match exceeding the budget returns
+   * {@link Match#ABORTED}. This {@code Grok} is left as is, see {@link Grok} about shared instances.
+   * <br>
+   * The copy shares the compiled regex and the value dictionaries, it is cheap to create.
+   *
+   * @param matchBudget : budget, or null for none
+   * @return a {@code Grok} of the same pattern with the given budget, with its own aborted match count
+   */
+  public Grok withMatchBudget(MatchBudget matchBudget) {
+    return new Grok(this, matchBudget, dictionaries);
+  }
+
+  public MatchBudget getMatchBudget() {
+    return matchBudget;
+  }
+
+  /**
+   * Number of matches of this {@code Grok} aborted because they exceeded the {@link MatchBudget}.
+   */
+  public long getAbortedMatchCount() {
+    return abortedMatchCount.sum();
+  }
+
+  /**
+   * Applies the named regex again on the given region, to rebuild the {@code Matcher} of a {@link Match}.
+   * Another {@link RegexEngine} than java.util.regex finds the groups, which are then replayed.
+   */
+  Matcher rematch(CharSequence text, int start, int end) {
+    if (compiledRegex instanceof JdkRegexEngine.JdkCompiledRegex) {
+      Matcher matcher = getCompiledNamedRegex().matcher(text).region(start, end);
+      return apply(matcher) ? matcher : null;
+    }
+    MatcherPool pool = getMatcherPool();
+    RegexMatcher matcher = pool.acquire();
+    try {
+      return apply(matcher, text, start, end) ? replay(matcher, text, end) : null;
+    } finally {
+      pool.release(matcher);
+    }
+  }
+
+  /**
+   * Builds a {@code java.util.regex.Matcher} holding the groups found by another engine. Its regex only
+   * matches runs of as many chars as each group holds, so it never backtracks whatever the named regex.
+   *
+   * @return the matcher, or null when a group starts before the match
+   */
+  private Matcher replay(RegexMatcher matcher, CharSequence text, int end) {
+    String[] names = new String[compiledRegex.groupCount() + 1];
+    int next = 0;
+    for (String name : namedGroups) {
+      names[namedGroupIndexes[next++]] = name;
+    }
+    int matchStart = matcher.start(0);
+    StringBuilder regex = new StringBuilder("(?s)");
+    for (int group = 1; group < names.length; group++) {
+      String open = names[group] == null ? "(" : "(?<" + names[group] + ">";
+      int groupStart = matcher.start(group);
+      if (groupStart < 0) {
+        regex.append("(?:(?!)").append(open).append("))?");
+      } else if (groupStart < matchStart) {
+        return null;
+      } else {
+        regex.append("(?=.{").append(Character.codePointCount(text, matchStart, groupStart)).append('}')
+            .append(open).append(".{").append(Character.codePointCount(text, groupStart, matcher.end(group)))
+            .append("}))");
+      }
+    }
+    regex.append(".{").append(Character.codePointCount(text, matchStart, matcher.end(0))).append('}');
+    Matcher replayed = Pattern.compile(regex.toString()).matcher(text).region(matchStart, end);
+    return replayed.lookingAt() ? replayed : null;
+  }
+
+  private Pattern getCompiledNamedRegex() {
+    Pattern pattern = compiledNamedRegex;
+    if (pattern == null) {
+      pattern = Pattern.compile(namedRegex);
+      compiledNamedRegex = pattern;
+    }
+    return pattern;
+  }
+
   /**
    * Match the given <tt>text</tt> with the named regex
    * {@code Grok} will extract data from the string and get an extence of {@link Match}.
+   * The text is searched, or matched from its beginning or as a whole, according to the {@link MatchMode}.
+   * <br>
+   * The {@code Matcher} is borrowed from a pool for the duration of the call only: the group
+   * offsets are copied into the {@link Match}, which stays valid after the {@code Matcher}
+   * is reused by the next match.
    *
    * @param text : Single line of log
    * @return Grok Match
    */
   public Match match(CharSequence text) {
-    if (compiledNamedRegex == null || text == null) {
+    if (text == null) {
+      return Match.EMPTY;
+    }
+    return match(text, 0, text.length());
+  }
+
+  /**
+   * Match the <tt>[start, end)</tt> range of the given <tt>buffer</tt> with the named regex,
+   * as if that range were the whole line: anchors match at its bounds and lookarounds can't see
+   * past them. No sub sequence of the buffer is created.
+   * <br>
+   * The offsets of the {@link Match} refer to the buffer, which must not change while
+   * the match is in use.
+   *
+   * @param buffer : text holding the line, for instance a whole block of lines
+   * @param start : index of the first char of the line
+   * @param end : index after the last char of the line
+   * @return Grok Match, {@link Match#ABORTED} when the {@link MatchBudget} is exceeded
+   * @throws IndexOutOfBoundsException when the range is not within the buffer
+   */
+  public Match match(CharSequence buffer, int start, int end) {
+    Match match = match(buffer, start, end, matchBudget);
+    if (match == Match.ABORTED) {
+      abortedMatchCount.increment();
+    }
+    return match;
+  }
+
+  /**
+   * Match a range of the buffer within the given budget instead of the one of this {@code Grok}. An aborted
+   * match is left for the caller to count.
+   */
+  Match match(CharSequence buffer, int start, int end, MatchBudget budget) {
+    if (compiledRegex == null || buffer == null) {
       return Match.EMPTY;
     }
 
-    Matcher matcher = compiledNamedRegex.matcher(text);
-    if (matcher.find()) {
-      return new Match(
-          text, this, matcher, matcher.start(0), matcher.end(0)
-      );
+    CharSequence input = budget == null ? buffer : new BudgetedCharSequence(buffer, budget);
+    try {
+      if (namedGroupIndexes == null) {
+        Matcher matcher = getCompiledNamedRegex().matcher(input).region(start, end);
+        if (apply(matcher)) {
+          return new Match(
+              buffer, this, matcher, matcher.start(0), matcher.end(0)
+          );
+        }
+        return Match.EMPTY;
+      }
+
+      MatcherPool pool = getMatcherPool();
+      RegexMatcher matcher = pool.acquire();
+      try {
+        if (apply(matcher, input, start, end)) {
+          return new Match(buffer, this, start, end, matcher);
+        }
+        return Match.EMPTY;
+      } finally {
+        pool.release(matcher);
+      }
+    } catch (BudgetedCharSequence.BudgetExceededException e) {
+      return Match.ABORTED;
     }
+  }
 
-    return Match.EMPTY;
+  /**
+   * Match the given <tt>text</tt> with the named regex and fill the given record with the fields,
+   * instead of creating a {@link Match}. Once the record and the pooled {@code Matcher} exist, no object
+   * is allocated for the line, even with a {@link MatchBudget}.
+   *
+   * @param text : Single line of log
+   * @param reuse : record created by {@link #newRecord()} of this {@code Grok}, or of the {@code Grok} it was
+   *     derived from by {@link #withMatchBudget(MatchBudget)} or {@link #withInternedValues(String, int)}, or
+   *     of another of its copies. Its previous content is lost
+   * @return whether the text matched, as {@link GrokRecord#isMatched()}
+   * @throws IllegalArgumentException when the record belongs to another {@code Grok}
+   */
+  public boolean match(CharSequence text, GrokRecord reuse) {
+    if (!reuse.belongsTo(this)) {
+      throw new IllegalArgumentException("The record belongs to another Grok");
+    }
+    reuse.clear(this, text);
+    if (compiledRegex == null || text == null) {
+      return false;
+    }
+
+    MatchBudget budget = matchBudget;
+    CharSequence input = budget == null ? text : reuse.budgeted(text, budget);
+    try {
+      if (namedGroupIndexes == null) {
+        Matcher matcher = getCompiledNamedRegex().matcher(input);
+        if (apply(matcher)) {
+          reuse.fill(matcher);
+        }
+        return reuse.isMatched();
+      }
+
+      MatcherPool pool = getMatcherPool();
+      RegexMatcher matcher = pool.acquire();
+      try {
+        if (apply(matcher, input, 0, text.length())) {
+          reuse.fill(matcher);
+        }
+        return reuse.isMatched();
+      } finally {
+        pool.release(matcher);
+      }
+    } catch (BudgetedCharSequence.BudgetExceededException e) {
+      abortedMatchCount.increment();
+      reuse.clear(this, text);
+      reuse.abort();
+      return false;
+    }
+  }
+
+  /**
+   * Match the given <tt>text</tt> with the named regex and push the captured fields to the given visitor,
+   * in the order of the pattern, instead of creating a {@link Match}. See {@link CaptureVisitor} for the
+   * duplicate keys and the empty captures.
+   *
+   * @param text : Single line of log
+   * @param visitor : receives the fields when the text matches
+   * @return whether the text matched, false as well when the {@link MatchBudget} is exceeded, which is
+   *     reported to {@link CaptureVisitor#aborted(CharSequence)}
+   * @throws GrokException when the visitor is flattened and a field has several values
+   */
+  public boolean match(CharSequence text, CaptureVisitor visitor) {
+    Objects.requireNonNull(visitor);
+    if (compiledRegex == null || text == null) {
+      return false;
+    }
+
+    MatchBudget budget = matchBudget;
+    CharSequence input = budget == null ? text : new BudgetedCharSequence(text, budget);
+    try {
+      if (namedGroupIndexes == null) {
+        Matcher matcher = getCompiledNamedRegex().matcher(input);
+        if (!apply(matcher)) {
+          return false;
+        }
+        visit(text, null, matcher, visitor);
+        return true;
+      }
+
+      MatcherPool pool = getMatcherPool();
+      RegexMatcher matcher = pool.acquire();
+      try {
+        if (!apply(matcher, input, 0, text.length())) {
+          return false;
+        }
+        visit(text, matcher, null, visitor);
+        return true;
+      } finally {
+        pool.release(matcher);
+      }
+    } catch (BudgetedCharSequence.BudgetExceededException e) {
+      abortedMatchCount.increment();
+      visitor.aborted(text);
+      return false;
+    }
+  }
+
+  /**
+   * Push the groups of a successful match to the visitor, read from the pooled matcher when given,
+   * by name from the {@code Matcher} otherwise.
+   */
+  private void visit(CharSequence text, RegexMatcher matcher, Matcher namedMatcher, CaptureVisitor visitor) {
+    boolean keepEmptyCaptures = visitor.isKeepEmptyCaptures();
+    if (!visitor.isFlattened()) {
+      for (int step = 0; step < capturePlan.length; step++) {
+        int start = groupStart(matcher, namedMatcher, capturePlan[step]);
+        if (start >= 0 || keepEmptyCaptures) {
+          visit(text, step, start, groupEnd(matcher, namedMatcher, capturePlan[step]), visitor);
+        }
+      }
+      return;
+    }
+    for (int id = 0; id < schema.size(); id++) {
+      int found = -1;
+      for (int step : schema.stepsOf(id)) {
+        if (groupStart(matcher, namedMatcher, capturePlan[step]) >= 0) {
+          if (found >= 0) {
+            throw new GrokException(format("key '%s' has multiple non-null values, this is not allowed in "
+                + "flattened mode", schema.getName(id)));
+          }
+          found = step;
+        }
+      }
+      if (found >= 0) {
+        visit(text, found, groupStart(matcher, namedMatcher, capturePlan[found]),
+            groupEnd(matcher, namedMatcher, capturePlan[found]), visitor);
+      } else if (keepEmptyCaptures) {
+        visit(text, schema.stepsOf(id)[0], -1, -1, visitor);
+      }
+    }
+  }
+
+  private void visit(CharSequence text, int step, int start, int end, CaptureVisitor visitor) {
+    Converter.Type type = capturePlan[step].type;
+    if (start >= 0 && type == Converter.Type.STRING) {
+      int unquotedStart = CharSlice.unquotedStart(text, start, end);
+      end = CharSlice.unquotedEnd(text, start, end);
+      start = unquotedStart;
+    }
+    visitor.visit(schema.fieldOf(step), capturePlan[step].key, text, start, end, type);
+  }
+
+  private static int groupStart(RegexMatcher matcher, Matcher namedMatcher, CaptureField field) {
+    return matcher != null ? matcher.start(field.group) : namedMatcher.start(field.groupName);
+  }
+
+  private static int groupEnd(RegexMatcher matcher, Matcher namedMatcher, CaptureField field) {
+    return matcher != null ? matcher.end(field.group) : namedMatcher.end(field.groupName);
+  }
+
+  /**
+   * Match the remaining bytes of the given <tt>buffer</tt>, decoded as UTF-8, with the named regex.
+   * ASCII bytes are matched in place through a {@link ByteCharSequence}, captures are decoded when read.
+   * The position of the buffer is not changed.
+   *
+   * @param buffer : Single line of log, heap, direct or memory mapped
+   * @return Grok Match
+   */
+  public Match match(ByteBuffer buffer) {
+    if (buffer == null) {
+      return Match.EMPTY;
+    }
+    return match(ByteCharSequence.of(buffer));
+  }
+
+  private MatcherPool getMatcherPool() {
+    MatcherPool pool = matcherPool;
+    if (pool == null) {
+      pool = new MatcherPool(compiledRegex);
+      matcherPool = pool;
+    }
+    return pool;
   }
 
   /**
@@ -185,10 +870,6 @@ public class Grok implements Serializable {
    * @return the Grok pattern
    */
   public String discover(String input) {
-
-    if (disco == null) {
-      disco = new Discovery(this);
-    }
-    return disco.discover(input);
+    return new Discovery(this).discover(input);
   }
 }
@@ -0,0 +1,378 @@
+package io.krakens.grok.api;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.krakens.grok.api.Match.ParseStatus;
+import io.krakens.grok.api.exception.GrokException;
+
+/**
+ * {@code GrokBinder} creates instances of a user class from the fields captured by a {@code Grok},
+ * without reflection per line and without going through a map.
+ * <br>
+ * The class is either a bean, with a no argument constructor and a setter or a non final field for some of
+ * the captured fields, or a class whose constructor parameters are named after the captured fields, such as
+ * a record or a class compiled with {@code -parameters}. The binding is resolved once into method handles,
+ * see {@link Grok#binder(Class)}.
+ * <br>
+ * Properties of primitive types, and of their wrappers, are parsed from the line without creating a string.
+ * {@code String} properties get the unquoted text of the field, other properties its value converted to
+ * the type given by the pattern, as in {@link Match#capture()}. Properties whose field was not captured, or
+ * can't be parsed, are left to their default: 0, false or null.
+ *
+ * @param <T> bound class
+ * @since 0.1.10
+ */
+public final class GrokBinder<T> {
+
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Grok grok;
+  private final Class<T> type;
+  /**
+   * No argument constructor, {@code ()Object}, or constructor taking the properties, {@code (Object[])Object}.
+   */
+  private final MethodHandle constructor;
+  private final boolean bean;
+  private final Property[] properties;
+
+  GrokBinder(Grok grok, Class<T> type) {
+    this.grok = grok;
+    this.type = type;
+    GrokSchema schema = grok.getSchema();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      Constructor<?> noArgument = findNoArgumentConstructor(type);
+      if (noArgument != null) {
+        this.bean = true;
+        this.constructor = lookup.unreflectConstructor(noArgument).asType(MethodType.methodType(Object.class));
+        this.properties = beanProperties(type, schema, lookup);
+      } else {
+        this.bean = false;
+        Constructor<?> selected = findNamedConstructor(type, schema);
+        if (selected == null) {
+          throw new IllegalArgumentException("No usable constructor in " + type.getName()
+              + ": it needs a constructor without argument, or with parameters named after the fields");
+        }
+        selected.setAccessible(true);
+        String[] names = parameterNames(selected);
+        Class<?>[] parameterTypes = selected.getParameterTypes();
+        this.properties = new Property[names.length];
+        for (int index = 0; index < names.length; index++) {
+          properties[index] = new Property(schema.getId(names[index]), parameterTypes[index], null);
+        }
+        this.constructor = lookup.unreflectConstructor(selected)
+            .asType(MethodType.methodType(Object.class, parameterTypes))
+            .asSpreader(Object[].class, names.length)
+            .asType(MethodType.methodType(Object.class, Object[].class));
+      }
+    } catch (IllegalAccessException | SecurityException e) {
+      throw new IllegalArgumentException("Can't access " + type.getName(), e);
+    }
+  }
+
+  private static Constructor<?> findNoArgumentConstructor(Class<?> type) {
+    for (Constructor<?> candidate : type.getDeclaredConstructors()) {
+      if (candidate.getParameterCount() == 0) {
+        candidate.setAccessible(true);
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The constructor with the most parameters, all of them named after a field.
+   */
+  private static Constructor<?> findNamedConstructor(Class<?> type, GrokSchema schema) {
+    Constructor<?> selected = null;
+    for (Constructor<?> candidate : type.getDeclaredConstructors()) {
+      String[] names = parameterNames(candidate);
+      if (names == null || (selected != null && names.length <= selected.getParameterCount())) {
+        continue;
+      }
+      boolean named = true;
+      for (String name : names) {
+        named &= schema.getId(name) >= 0;
+      }
+      if (named) {
+        selected = candidate;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Names of the parameters of a constructor, null when they are not in the class file. The canonical
+   * constructor of a record is named after its components.
+   */
+  private static String[] parameterNames(Constructor<?> constructor) {
+    Parameter[] parameters = constructor.getParameters();
+    String[] names = new String[parameters.length];
+    for (int index = 0; index < parameters.length; index++) {
+      if (!parameters[index].isNamePresent()) {
+        return recordComponentNames(constructor);
+      }
+      names[index] = parameters[index].getName();
+    }
+    return names;
+  }
+
+  /**
+   * Names of the components of a record when the constructor is its canonical one, null otherwise. Records
+   * are read by reflection, they don't exist before Java 16.
+   */
+  private static String[] recordComponentNames(Constructor<?> constructor) {
+    try {
+      Object[] components = (Object[]) Class.class.getMethod("getRecordComponents")
+          .invoke(constructor.getDeclaringClass());
+      if (components == null || components.length != constructor.getParameterCount()) {
+        return null;
+      }
+      Method getName = components.getClass().getComponentType().getMethod("getName");
+      Method getType = components.getClass().getComponentType().getMethod("getType");
+      String[] names = new String[components.length];
+      for (int index = 0; index < components.length; index++) {
+        if (getType.invoke(components[index]) != constructor.getParameterTypes()[index]) {
+          return null;
+        }
+        names[index] = (String) getName.invoke(components[index]);
+      }
+      return names;
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static Property[] beanProperties(Class<?> type, GrokSchema schema, MethodHandles.Lookup lookup)
+      throws IllegalAccessException {
+    List<Property> properties = new ArrayList<>();
+    for (int id = 0; id < schema.size(); id++) {
+      String name = schema.getName(id);
+      if (name.isEmpty()) {
+        continue;
+      }
+      String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+      MethodHandle setter = null;
+      Class<?> propertyType = null;
+      for (Class<?> current = type; current != null && setter == null; current = current.getSuperclass()) {
+        for (Method method : current.getDeclaredMethods()) {
+          if (method.getName().equals(setterName) && method.getParameterCount() == 1
+              && !Modifier.isStatic(method.getModifiers())) {
+            method.setAccessible(true);
+            setter = lookup.unreflect(method);
+            propertyType = method.getParameterTypes()[0];
+            break;
+          }
+        }
+        if (setter == null) {
+          for (Field field : current.getDeclaredFields()) {
+            if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers())
+                && !Modifier.isFinal(field.getModifiers())) {
+              field.setAccessible(true);
+              setter = lookup.unreflectSetter(field);
+              propertyType = field.getType();
+              break;
+            }
+          }
+        }
+      }
+      if (setter != null) {
+        setter = setter.asType(MethodType.methodType(void.class, Object.class, propertyType));
+        properties.add(new Property(id, propertyType, setter));
+      }
+    }
+    return properties.toArray(new Property[0]);
+  }
+
+  /**
+   * Get the bound class.
+   */
+  public Class<T> getType() {
+    return type;
+  }
+
+  /**
+   * Get the {@code Grok} whose captures are bound.
+   */
+  public Grok getGrok() {
+    return grok;
+  }
+
+  /**
+   * Match the given line and bind its fields. Matching into a reused record with
+   * {@link #bind(GrokRecord)} avoids allocating the record for every line.
+   *
+   * @param text : Single line of log
+   * @return a new instance, null when the line does not match
+   */
+  public T match(CharSequence text) {
+    GrokRecord record = grok.newRecord();
+    grok.match(text, record);
+    return bind(record);
+  }
+
+  /**
+   * Bind the fields of a record filled by {@link Grok#match(CharSequence, GrokRecord)}.
+   *
+   * @param record : record of the {@code Grok} of this binder, or of one of its copies
+   * @return a new instance, null when the record did not match
+   * @throws IllegalArgumentException when the record belongs to another {@code Grok}
+   * @throws GrokException when the constructor or a setter fails
+   */
+  public T bind(GrokRecord record) {
+    if (!record.belongsTo(grok)) {
+      throw new IllegalArgumentException("The record belongs to another Grok");
+    }
+    if (!record.isMatched()) {
+      return null;
+    }
+    try {
+      Object instance;
+      if (bean) {
+        instance = (Object) constructor.invokeExact();
+        for (Property property : properties) {
+          property.set(instance, record);
+        }
+      } else {
+        Object[] arguments = new Object[properties.length];
+        for (int index = 0; index < arguments.length; index++) {
+          arguments[index] = properties[index].value(record);
+        }
+        instance = (Object) constructor.invokeExact(arguments);
+      }
+      return type.cast(instance);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new GrokException("Can't bind " + type.getName(), e);
+    }
+  }
+
+  /**
+   * A property of the bound class, set from one field.
+   */
+  private static final class Property {
+    private final int id;
+    private final Class<?> type;
+    /**
+     * Wrapper of a primitive type, the type itself otherwise.
+     */
+    private final Class<?> boxed;
+    /**
+     * Setter typed {@code (Object, type)void}, null for a constructor parameter.
+     */
+    private final MethodHandle setter;
+    /**
+     * Setter typed {@code (Object, Object)void}.
+     */
+    private final MethodHandle genericSetter;
+    /** Value of the property when the field is missing: 0 or false for primitive types, null otherwise. */
+    private final Object missing;
+
+    Property(int id, Class<?> type, MethodHandle setter) {
+      this.id = id;
+      this.type = type;
+      this.boxed = MethodType.methodType(type).wrap().returnType();
+      this.setter = setter;
+      this.genericSetter = setter == null ? null : setter.asType(SETTER_TYPE);
+      this.missing = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+    }
+
+    /**
+     * Set the property of a bean, primitive types without boxing.
+     */
+    void set(Object target, GrokRecord record) throws Throwable {
+      if (!record.has(id)) {
+        return;
+      }
+      CharSequence subject = record.getSubject();
+      int start = record.getStart(id);
+      int end = record.getEnd(id);
+      if (type == int.class) {
+        if (record.checkLong(id, Integer.MIN_VALUE, Integer.MAX_VALUE) == ParseStatus.PARSED) {
+          setter.invokeExact(target, (int) record.parseLong(id));
+        }
+      } else if (type == long.class) {
+        if (record.checkLong(id, Long.MIN_VALUE, Long.MAX_VALUE) == ParseStatus.PARSED) {
+          setter.invokeExact(target, record.parseLong(id));
+        }
+      } else if (type == double.class) {
+        if (Numbers.checkDouble(subject, start, end) == ParseStatus.PARSED) {
+          setter.invokeExact(target, Numbers.parseDouble(subject, start, end));
+        }
+      } else if (type == float.class) {
+        if (Numbers.checkDouble(subject, start, end) == ParseStatus.PARSED) {
+          setter.invokeExact(target, Numbers.parseFloat(subject, start, end));
+        }
+      } else if (type == boolean.class) {
+        if (Numbers.checkBoolean(subject, start, end) == ParseStatus.PARSED) {
+          setter.invokeExact(target, Numbers.parseBoolean(subject, start, end));
+        }
+      } else {
+        Object value = value(record);
+        if (value != null) {
+          genericSetter.invokeExact(target, value);
+        }
+      }
+    }
+
+    /**
+     * Value of the property, boxed.
+     */
+    Object value(GrokRecord record) {
+      if (id < 0 || !record.has(id)) {
+        return missing;
+      }
+      CharSequence subject = record.getSubject();
+      int start = record.getStart(id);
+      int end = record.getEnd(id);
+      if (boxed == Integer.class || boxed == Long.class || boxed == Short.class || boxed == Byte.class) {
+        long min = boxed == Integer.class ? Integer.MIN_VALUE : boxed == Long.class ? Long.MIN_VALUE
+            : boxed == Short.class ? Short.MIN_VALUE : Byte.MIN_VALUE;
+        long max = boxed == Integer.class ? Integer.MAX_VALUE : boxed == Long.class ? Long.MAX_VALUE
+            : boxed == Short.class ? Short.MAX_VALUE : Byte.MAX_VALUE;
+        if (record.checkLong(id, min, max) != ParseStatus.PARSED) {
+          return missing;
+        }
+        long value = record.parseLong(id);
+        if (boxed == Integer.class) {
+          return (int) value;
+        } else if (boxed == Long.class) {
+          return value;
+        }
+        return boxed == Short.class ? (Object) (short) value : (Object) (byte) value;
+      }
+      if (boxed == Double.class || boxed == Float.class) {
+        if (Numbers.checkDouble(subject, start, end) != ParseStatus.PARSED) {
+          return missing;
+        }
+        return boxed == Double.class ? (Object) Numbers.parseDouble(subject, start, end)
+            : (Object) Numbers.parseFloat(subject, start, end);
+      }
+      if (boxed == Boolean.class) {
+        return Numbers.checkBoolean(subject, start, end) == ParseStatus.PARSED
+            ? Boolean.valueOf(Numbers.parseBoolean(subject, start, end)) : missing;
+      }
+      if (boxed == String.class || boxed == CharSequence.class) {
+        return record.getString(id);
+      }
+      if (boxed == Character.class) {
+        String value = record.getString(id);
+        return value.length() == 1 ? Character.valueOf(value.charAt(0)) : missing;
+      }
+      // converted by the type of the pattern
+      Object value = record.getValue(id);
+      return boxed.isInstance(value) ? value : missing;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import io.krakens.grok.api.Grok.MatchMode;
+
+/**
+ * {@code GrokCache} is a size bounded, least recently used cache of compiled {@link Grok}.
+ * <br>
+ * Entries are keyed on the pattern, the default time zone, the named only flag, the match mode and the
+ * captured fields.
+ * All the methods are synchronized, the cache is meant to be shared by the users of a {@link GrokCompiler}.
+ *
+ * @since 0.1.10
+ */
+final class GrokCache implements Serializable {
+
+  private final Entries entries;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  /**
+   * Incremented by each invalidation, to drop {@code Grok} compiled from older definitions.
+   */
+  private long generation;
+
+  GrokCache(int maximumSize) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("{maximumSize} should be greater than 0");
+    }
+    this.entries = new Entries(maximumSize);
+  }
+
+  synchronized Grok get(String pattern, ZoneId defaultTimeZone, boolean namedOnly, MatchMode matchMode,
+      Set<String> fields) {
+    Grok grok = entries.get(new Key(pattern, defaultTimeZone, namedOnly, matchMode, fields));
+    if (grok == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+    return grok;
+  }
+
+  synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * Caches a {@code Grok}, unless the cache was invalidated since the given generation.
+   */
+  synchronized void put(String pattern, ZoneId defaultTimeZone, boolean namedOnly, MatchMode matchMode,
+      Set<String> fields, Grok grok, long generation) {
+    if (this.generation == generation) {
+      entries.put(new Key(pattern, defaultTimeZone, namedOnly, matchMode, fields), grok);
+    }
+  }
+
+  /**
+   * Drops every entry, the counters are kept.
+   */
+  synchronized void invalidate() {
+    generation++;
+    entries.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized long estimateRetainedSize() {
+    long size = SizeEstimator.object(6) + SizeEstimator.entries(entries.size());
+    for (Map.Entry<Key, Grok> entry : entries.entrySet()) {
+      size += SizeEstimator.object(5) + SizeEstimator.string(entry.getKey().pattern);
+      if (entry.getKey().fields != null) {
+        size += SizeEstimator.entries(entry.getKey().fields.size());
+      }
+      size += entry.getValue().estimateRetainedSize();
+    }
+    return size;
+  }
+
+  synchronized long hitCount() {
+    return hitCount;
+  }
+
+  synchronized long missCount() {
+    return missCount;
+  }
+
+  synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  private final class Entries extends LinkedHashMap<Key, Grok> {
+    private final int maximumSize;
+
+    Entries(int maximumSize) {
+      super(16, 0.75f, true);
+      this.maximumSize = maximumSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Grok> eldest) {
+      if (size() > maximumSize) {
+        evictionCount++;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private static final class Key implements Serializable {
+    private final String pattern;
+    private final ZoneId defaultTimeZone;
+    private final boolean namedOnly;
+    private final MatchMode matchMode;
+    private final Set<String> fields;
+
+    Key(String pattern, ZoneId defaultTimeZone, boolean namedOnly, MatchMode matchMode, Set<String> fields) {
+      this.pattern = pattern;
+      this.defaultTimeZone = defaultTimeZone;
+      this.namedOnly = namedOnly;
+      this.matchMode = matchMode;
+      this.fields = fields == null ? null : new HashSet<>(fields);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return namedOnly == key.namedOnly
+          && matchMode == key.matchMode
+          && pattern.equals(key.pattern)
+          && Objects.equals(defaultTimeZone, key.defaultTimeZone)
+          && Objects.equals(fields, key.fields);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(pattern, defaultTimeZone, namedOnly, matchMode, fields);
+    }
+  }
+}
@@ -1,7 +1,5 @@
 package io.krakens.grok.api;
 
-import static java.lang.String.format;
-
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,13 +10,22 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import io.krakens.grok.api.Converter.IConverter;
+import io.krakens.grok.api.Grok.MatchMode;
 import io.krakens.grok.api.exception.GrokException;
 
 import org.apache.commons.lang3.StringUtils;
@@ -33,14 +40,189 @@ public class GrokCompiler implements Serializable {
    */
   private final Map<String, String> grokPatternDefinitions = new HashMap<>();
 
+  /**
+   * Immutable snapshot of the definitions, shared by every {@code Grok} compiled until the next change.
+   */
+  private transient volatile Map<String, String> patternDefinitionsSnapshot;
+
+  /**
+   * Expands the {@code Grok} patterns, keeps the tokenized definitions between compilations.
+   */
+  private final PatternExpander expander = new PatternExpander();
+
+  /**
+   * Compiled {@code Grok} cache, disabled unless {@link #enableCache(int)} is called.
+   */
+  private GrokCache cache;
+
+  /**
+   * Engine compiling the named regex of the {@code Grok}.
+   */
+  private RegexEngine regexEngine = JdkRegexEngine.INSTANCE;
+
+  /**
+   * Converters of the custom types, by lower case name, replaced as a whole on registration. Not serialized:
+   * the converters are often lambdas, they are registered again after deserialization.
+   */
+  private transient volatile Map<String, IConverter<?>> customConverters = Collections.emptyMap();
+
   private GrokCompiler() {}
 
   public static GrokCompiler newInstance() {
     return new GrokCompiler();
   }
 
+  /**
+   * Get the registered pattern definitions. Changing the returned map changes the definitions, as
+   * {@code register} does.
+   *
+   * @return live view of the pattern definitions (name, regular expression)
+   */
   public Map<String, String> getPatternDefinitions() {
-    return grokPatternDefinitions;
+    return new DefinitionsView();
+  }
+
+  private Map<String, String> getPatternDefinitionsSnapshot() {
+    Map<String, String> snapshot = patternDefinitionsSnapshot;
+    if (snapshot == null) {
+      snapshot = PatternDefinitions.snapshot(grokPatternDefinitions);
+      patternDefinitionsSnapshot = snapshot;
+    }
+    return snapshot;
+  }
+
+  /**
+   * Estimates the heap retained by this compiler: pattern definitions, their shared snapshot,
+   * the tokenized definitions and the cached {@code Grok}.
+   *
+   * @return estimated size in bytes
+   */
+  public long estimateRetainedSize() {
+    long size = SizeEstimator.object(4) + SizeEstimator.map(grokPatternDefinitions);
+    Map<String, String> snapshot = patternDefinitionsSnapshot;
+    if (snapshot != null) {
+      size += SizeEstimator.entries(snapshot.size());
+    }
+    size += expander.estimateRetainedSize();
+    GrokCache cache = this.cache;
+    if (cache != null) {
+      size += cache.estimateRetainedSize();
+    }
+    return size;
+  }
+
+  /**
+   * Enables a least recently used cache of the compiled {@code Grok}, keyed on the pattern,
+   * the default time zone, the named only flag and the match mode.
+   * Compiling the same pattern again returns the same, shared, {@code Grok} instance.
+   * The cache is invalidated whenever {@code register} changes a pattern definition.
+   *
+   * @param maximumSize : maximum number of cached {@code Grok}
+   * @throws IllegalArgumentException when the size is not positive
+   */
+  public void enableCache(int maximumSize) {
+    cache = new GrokCache(maximumSize);
+  }
+
+  /**
+   * Disables and drops the compiled {@code Grok} cache.
+   */
+  public void disableCache() {
+    cache = null;
+  }
+
+  public boolean isCacheEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * Number of compilations served from the cache, 0 when the cache is disabled.
+   */
+  public long getCacheHitCount() {
+    GrokCache cache = this.cache;
+    return cache == null ? 0 : cache.hitCount();
+  }
+
+  /**
+   * Number of compilations which were not in the cache, 0 when the cache is disabled.
+   */
+  public long getCacheMissCount() {
+    GrokCache cache = this.cache;
+    return cache == null ? 0 : cache.missCount();
+  }
+
+  /**
+   * Number of {@code Grok} evicted because the cache was full, 0 when the cache is disabled.
+   */
+  public long getCacheEvictionCount() {
+    GrokCache cache = this.cache;
+    return cache == null ? 0 : cache.evictionCount();
+  }
+
+  /**
+   * Number of {@code Grok} currently cached, 0 when the cache is disabled.
+   */
+  public int getCacheSize() {
+    GrokCache cache = this.cache;
+    return cache == null ? 0 : cache.size();
+  }
+
+  /**
+   * Sets the engine compiling the named regex of the {@code Grok} compiled from now on,
+   * {@link JdkRegexEngine#INSTANCE} by default. The cache is invalidated.
+   * <br>
+   * {@link LinearRegexEngine} bounds the matching time of every line, use
+   * {@link LinearRegexEngine#withFallback(RegexEngine)} to compile the patterns it doesn't support as well.
+   *
+   * @param regexEngine : regex engine
+   */
+  public void setRegexEngine(RegexEngine regexEngine) {
+    this.regexEngine = Objects.requireNonNull(regexEngine);
+    invalidateCache();
+  }
+
+  public RegexEngine getRegexEngine() {
+    return regexEngine;
+  }
+
+  /**
+   * Registers the converter of a custom type, used by the semantics of the {@code Grok} compiled from now on,
+   * such as {@code %{IPV4:client;ipv4}} for the type {@code ipv4}. The type name is not case sensitive,
+   * registering it again replaces its converter. The cache is invalidated.
+   * <br>
+   * A parameter given after the type, as in {@code %{DATA:timeout;duration;ms}}, is handed to
+   * {@link IConverter#newConverter(String, Object...)}. The values of an {@link Converter.ILongConverter}
+   * are also read as primitive longs, by {@link GrokRecord#getLong(int)} or a {@link GrokBinder}.
+   * <br>
+   * The converters are not serialized with the compiler, a deserialized compiler has none until they are
+   * registered again.
+   *
+   * @param type : name of the type
+   * @param converter : converter of the values of the type
+   * @throws IllegalArgumentException when the name is empty, contains a delimiter or is a built in type
+   */
+  public void registerConverter(String type, IConverter<?> converter) {
+    Objects.requireNonNull(converter);
+    String name = Objects.requireNonNull(type).trim().toLowerCase();
+    if (name.isEmpty() || name.indexOf(':') >= 0 || name.indexOf(';') >= 0) {
+      throw new IllegalArgumentException("Invalid type name: " + type);
+    }
+    if (Converter.isBuiltIn(name)) {
+      throw new IllegalArgumentException("Type already built in: " + type);
+    }
+    Map<String, IConverter<?>> converters = new HashMap<>(getConverters());
+    converters.put(name, converter);
+    customConverters = Collections.unmodifiableMap(converters);
+    invalidateCache();
+  }
+
+  /**
+   * Get the registered converters of the custom types, by lower case name.
+   */
+  public Map<String, IConverter<?>> getConverters() {
+    Map<String, IConverter<?>> converters = customConverters;
+    // null after deserialization
+    return converters == null ? Collections.emptyMap() : converters;
   }
 
   /**
@@ -55,7 +237,25 @@ public class GrokCompiler implements Serializable {
     pattern = Objects.requireNonNull(pattern).trim();
 
     if (!name.isEmpty() && !pattern.isEmpty()) {
-      grokPatternDefinitions.put(name, pattern);
+      String previous = grokPatternDefinitions.put(name, pattern);
+      if (!pattern.equals(previous)) {
+        definitionsChanged();
+      }
+    }
+  }
+
+  /**
+   * Drop the snapshot of the definitions and the {@code Grok} compiled from it.
+   */
+  private void definitionsChanged() {
+    patternDefinitionsSnapshot = null;
+    invalidateCache();
+  }
+
+  private void invalidateCache() {
+    GrokCache cache = this.cache;
+    if (cache != null) {
+      cache.invalidate();
     }
   }
 
@@ -135,72 +335,239 @@ public class GrokCompiler implements Serializable {
    * @throws IllegalArgumentException when pattern definition is invalid
    */
   public Grok compile(final String pattern, ZoneId defaultTimeZone, boolean namedOnly) throws IllegalArgumentException {
+    return compile(pattern, defaultTimeZone, namedOnly, MatchMode.FIND);
+  }
+
+  /**
+   * Compiles a given Grok pattern and returns a Grok object which can parse the pattern.
+   * Anchored modes fail fast on lines which don't match, instead of retrying from every offset.
+   *
+   * @param pattern : Grok pattern (ex: %{IP})
+   * @param defaultTimeZone : time zone used to parse a timestamp when it doesn't contain the time zone
+   * @param namedOnly : Whether to capture named expressions only or not (i.e. %{IP:ip} but not ${IP})
+   * @param matchMode : search the pattern (find), match a prefix (lookingAt) or the whole line (matches)
+   * @return a compiled pattern
+   * @throws IllegalArgumentException when pattern definition is invalid, or not supported by the regex engine
+   */
+  public Grok compile(final String pattern, ZoneId defaultTimeZone, boolean namedOnly, MatchMode matchMode)
+      throws IllegalArgumentException {
+    return compile(pattern, defaultTimeZone, namedOnly, matchMode, null);
+  }
+
+  /**
+   * Compiles a given Grok pattern capturing the given fields only, for instance {@code clientip} and
+   * {@code response} out of {@code %{COMBINEDAPACHELOG}}. The references of the other fields are compiled
+   * as non capturing groups: they still have to match, but are neither captured nor converted.
+   *
+   * @param pattern : Grok pattern (ex: %{IP})
+   * @param fields : names of the fields to capture, without type
+   * @return a compiled pattern
+   * @throws IllegalArgumentException when pattern definition is invalid
+   */
+  public Grok compile(final String pattern, Set<String> fields) throws IllegalArgumentException {
+    return compile(pattern, ZoneOffset.systemDefault(), false, MatchMode.FIND, Objects.requireNonNull(fields));
+  }
+
+  /**
+   * Compiles a given Grok pattern capturing the given fields only. The references of the other fields are
+   * compiled as non capturing groups, as unnamed references are when {@code namedOnly} is set.
+   *
+   * @param pattern : Grok pattern (ex: %{IP})
+   * @param defaultTimeZone : time zone used to parse a timestamp when it doesn't contain the time zone
+   * @param namedOnly : Whether to capture named expressions only or not (i.e. %{IP:ip} but not ${IP})
+   * @param matchMode : search the pattern (find), match a prefix (lookingAt) or the whole line (matches)
+   * @param fields : names of the fields to capture, without type, or null to capture every field
+   * @return a compiled pattern
+   * @throws IllegalArgumentException when pattern definition is invalid, or not supported by the regex engine
+   */
+  public Grok compile(final String pattern, ZoneId defaultTimeZone, boolean namedOnly, MatchMode matchMode,
+      Set<String> fields) throws IllegalArgumentException {
 
     if (StringUtils.isBlank(pattern)) {
       throw new IllegalArgumentException("{pattern} should not be empty or null");
     }
 
-    String namedRegex = pattern;
-    int index = 0;
-    /** flag for infinite recursion. */
-    int iterationLeft = 1000;
-    Boolean continueIteration = true;
-    Map<String, String> patternDefinitions = new HashMap<>(grokPatternDefinitions);
-
-    // output
-    Map<String, String> namedRegexCollection = new HashMap<>();
-
-    // Replace %{foo} with the regex (mostly group name regex)
-    // and then compile the regex
-    while (continueIteration) {
-      continueIteration = false;
-      if (iterationLeft <= 0) {
-        throw new IllegalArgumentException("Deep recursion pattern compilation of " + pattern);
-      }
-      iterationLeft--;
-
-      Set<String> namedGroups = GrokUtils.getNameGroups(GrokUtils.GROK_PATTERN.pattern());
-      Matcher matcher = GrokUtils.GROK_PATTERN.matcher(namedRegex);
-      // Match %{Foo:bar} -> pattern name and subname
-      // Match %{Foo=regex} -> add new regex definition
-      if (matcher.find()) {
-        continueIteration = true;
-        Map<String, String> group = GrokUtils.namedGroups(matcher, namedGroups);
-        if (group.get("definition") != null) {
-          patternDefinitions.put(group.get("pattern"), group.get("definition"));
-          group.put("name", group.get("name") + "=" + group.get("definition"));
-        }
-        int count = StringUtils.countMatches(namedRegex, "%{" + group.get("name") + "}");
-        for (int i = 0; i < count; i++) {
-          String definitionOfPattern = patternDefinitions.get(group.get("pattern"));
-          if (definitionOfPattern == null) {
-            throw new IllegalArgumentException(format("No definition for key '%s' found, aborting",
-                group.get("pattern")));
-          }
-          String replacement = String.format("(?<name%d>%s)", index, definitionOfPattern);
-          if (namedOnly && group.get("subname") == null) {
-            replacement = String.format("(?:%s)", definitionOfPattern);
-          }
-          namedRegexCollection.put("name" + index,
-              (group.get("subname") != null ? group.get("subname") : group.get("name")));
-          namedRegex =
-              StringUtils.replace(namedRegex, "%{" + group.get("name") + "}", replacement,1);
-          // System.out.println(_expanded_pattern);
-          index++;
-        }
+    GrokCache cache = this.cache;
+    RegexEngine regexEngine = this.regexEngine;
+    long generation = 0;
+    if (cache != null) {
+      generation = cache.generation();
+      Grok grok = cache.get(pattern, defaultTimeZone, namedOnly, matchMode, fields);
+      if (grok != null) {
+        return grok;
       }
     }
 
+    Map<String, String> definitions = getPatternDefinitionsSnapshot();
+    PatternExpander.Expansion expansion = expander.expand(pattern, definitions, namedOnly, fields);
+    String namedRegex = expansion.namedRegex;
+
     if (namedRegex.isEmpty()) {
       throw new IllegalArgumentException("Pattern not found");
     }
 
-    return new Grok(
+    Grok grok = new Grok(
         pattern,
         namedRegex,
-        namedRegexCollection,
-        patternDefinitions,
-        defaultTimeZone
+        Collections.unmodifiableMap(expansion.namedRegexCollection),
+        PatternDefinitions.overlay(definitions, expansion.inlineDefinitions),
+        defaultTimeZone,
+        matchMode,
+        regexEngine,
+        getConverters()
     );
+
+    if (cache != null) {
+      cache.put(pattern, defaultTimeZone, namedOnly, matchMode, fields, grok, generation);
+    }
+    return grok;
+  }
+
+  /**
+   * Compiles an ordered list of Grok patterns into a {@link GrokSet}, each pattern being its own id.
+   *
+   * @param patterns : Grok patterns, in the order they are tried
+   * @return a compiled set of patterns
+   * @throws IllegalArgumentException when a pattern definition is invalid
+   */
+  public GrokSet compileSet(List<String> patterns) throws IllegalArgumentException {
+    Map<String, String> patternsById = new LinkedHashMap<>();
+    for (String pattern : patterns) {
+      patternsById.put(pattern, pattern);
+    }
+    return compileSet(patternsById);
+  }
+
+  /**
+   * Compiles an ordered map of Grok patterns into a {@link GrokSet}.
+   *
+   * @param patternsById : Grok patterns by id, in the order they are tried (ex: a {@code LinkedHashMap})
+   * @return a compiled set of patterns
+   * @throws IllegalArgumentException when a pattern definition is invalid
+   */
+  public GrokSet compileSet(Map<String, String> patternsById) throws IllegalArgumentException {
+    return compileSet(patternsById, ZoneOffset.systemDefault(), false, MatchMode.FIND);
+  }
+
+  /**
+   * Compiles an ordered map of Grok patterns into a {@link GrokSet}, the first pattern matching a line wins.
+   *
+   * @param patternsById : Grok patterns by id, in the order they are tried (ex: a {@code LinkedHashMap})
+   * @param defaultTimeZone : time zone used to parse a timestamp when it doesn't contain the time zone
+   * @param namedOnly : Whether to capture named expressions only or not (i.e. %{IP:ip} but not ${IP})
+   * @param matchMode : search the patterns (find), match a prefix (lookingAt) or the whole line (matches)
+   * @return a compiled set of patterns
+   * @throws IllegalArgumentException when a pattern definition is invalid, or the map is empty
+   */
+  public GrokSet compileSet(Map<String, String> patternsById, ZoneId defaultTimeZone, boolean namedOnly,
+      MatchMode matchMode) throws IllegalArgumentException {
+    return compileSet(patternsById, defaultTimeZone, namedOnly, matchMode, false);
+  }
+
+  /**
+   * Compiles an ordered map of Grok patterns into a {@link GrokSet}, the first pattern matching a line wins.
+   * A combined set joins the patterns into a single alternation, compiled by the regex engine, which
+   * finds the same matches as trying the patterns one after another in a single application of the regex.
+   * With the {@link LinearRegexEngine}, that is a single pass over the line.
+   *
+   * @param patternsById : Grok patterns by id, in the order they are tried (ex: a {@code LinkedHashMap})
+   * @param defaultTimeZone : time zone used to parse a timestamp when it doesn't contain the time zone
+   * @param namedOnly : Whether to capture named expressions only or not (i.e. %{IP:ip} but not ${IP})
+   * @param matchMode : search the patterns (find), match a prefix (lookingAt) or the whole line (matches)
+   * @param combined : whether to join the patterns into a single regex
+   * @return a compiled set of patterns
+   * @throws IllegalArgumentException when a pattern definition is invalid, the map is empty, or a pattern
+   *     refers to its own groups and can't be combined
+   */
+  public GrokSet compileSet(Map<String, String> patternsById, ZoneId defaultTimeZone, boolean namedOnly,
+      MatchMode matchMode, boolean combined) throws IllegalArgumentException {
+    RegexEngine regexEngine = this.regexEngine;
+    List<String> ids = new ArrayList<>(patternsById.size());
+    List<Grok> members = new ArrayList<>(patternsById.size());
+    for (Map.Entry<String, String> entry : patternsById.entrySet()) {
+      ids.add(Objects.requireNonNull(entry.getKey()));
+      members.add(compile(entry.getValue(), defaultTimeZone, namedOnly, matchMode));
+    }
+    return new GrokSet(ids, members, combined ? regexEngine : null);
+  }
+
+  /**
+   * Pattern definitions as returned by {@link #getPatternDefinitions()}, whose changes drop the snapshot
+   * and the cache as {@link #register(String, String)} does.
+   */
+  private final class DefinitionsView extends AbstractMap<String, String> {
+
+    @Override
+    public int size() {
+      return grokPatternDefinitions.size();
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+      return grokPatternDefinitions.containsKey(name);
+    }
+
+    @Override
+    public String get(Object name) {
+      return grokPatternDefinitions.get(name);
+    }
+
+    @Override
+    public String put(String name, String pattern) {
+      String previous = grokPatternDefinitions.put(name, pattern);
+      if (!Objects.equals(pattern, previous)) {
+        definitionsChanged();
+      }
+      return previous;
+    }
+
+    @Override
+    public String remove(Object name) {
+      if (!grokPatternDefinitions.containsKey(name)) {
+        return null;
+      }
+      String previous = grokPatternDefinitions.remove(name);
+      definitionsChanged();
+      return previous;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+      return new AbstractSet<Entry<String, String>>() {
+        @Override
+        public int size() {
+          return grokPatternDefinitions.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+          Iterator<Entry<String, String>> entries = grokPatternDefinitions.entrySet().iterator();
+          return new Iterator<Entry<String, String>>() {
+            @Override
+            public boolean hasNext() {
+              return entries.hasNext();
+            }
+
+            @Override
+            public Entry<String, String> next() {
+              Entry<String, String> entry = entries.next();
+              return new SimpleEntry<String, String>(entry) {
+                @Override
+                public String setValue(String pattern) {
+                  super.setValue(pattern);
+                  return DefinitionsView.this.put(entry.getKey(), pattern);
+                }
+              };
+            }
+
+            @Override
+            public void remove() {
+              entries.remove();
+              definitionsChanged();
+            }
+          };
+        }
+      };
+    }
   }
 }
@@ -0,0 +1,335 @@
+package io.krakens.grok.api;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+import io.krakens.grok.api.Converter.IConverter;
+import io.krakens.grok.api.Match.ParseStatus;
+
+/**
+ * {@code GrokRecord} holds the fields captured from one line, read by their {@link GrokSchema} id.
+ * <br>
+ * A record is created once with {@link Grok#newRecord()} and filled again by every
+ * {@link Grok#match(CharSequence, GrokRecord)}: it keeps the offsets of the fields in the line, and decodes
+ * a field only when it is read. Matching a line into a record allocates nothing, and numbers are parsed
+ * from the line, without creating strings in most cases.
+ * <br>
+ * A field captured by several groups holds the first one which took part in the match. The record refers
+ * to the line, which must not change while it is read. A record is not thread safe.
+ *
+ * @since 0.1.10
+ */
+public final class GrokRecord {
+
+  private Grok grok;
+  private final GrokSchema schema;
+  private final CaptureField[] plan;
+  private final IConverter<?>[] converters;
+  private final int[] starts;
+  private final int[] ends;
+  /** Converted values, valid for the current line when their stamp is the current one. */
+  private final Object[] values;
+  private final int[] valueStamps;
+  private int stamp;
+  private CharSequence subject;
+  private boolean matched;
+  private boolean aborted;
+  /**
+   * Wrapper counting the reads of the line, reused by every match within a {@link MatchBudget}.
+   */
+  private BudgetedCharSequence budgeted;
+
+  GrokRecord(Grok grok) {
+    this.schema = grok.getSchema();
+    this.plan = grok.capturePlan;
+    this.converters = new IConverter<?>[schema.size()];
+    for (int step = plan.length - 1; step >= 0; step--) {
+      converters[schema.fieldOf(step)] = plan[step].converter;
+    }
+    this.starts = new int[schema.size()];
+    this.ends = new int[schema.size()];
+    this.values = new Object[schema.size()];
+    this.valueStamps = new int[schema.size()];
+    clear(grok, null);
+  }
+
+  /**
+   * Whether the given {@code Grok} can fill this record: it was compiled along with the one which created it,
+   * as its copies with another budget or other dictionaries are.
+   */
+  boolean belongsTo(Grok grok) {
+    return grok.capturePlan == plan;
+  }
+
+  /**
+   * Forget the previous line, the next one is matched by the given {@code Grok}.
+   */
+  void clear(Grok grok, CharSequence text) {
+    this.grok = grok;
+    subject = text;
+    matched = false;
+    aborted = false;
+    Arrays.fill(starts, -1);
+    Arrays.fill(ends, -1);
+    if (++stamp == 0) {
+      Arrays.fill(valueStamps, 0);
+      stamp = 1;
+    }
+  }
+
+  /**
+   * Copy the offsets of the groups of a successful match, group numbers from the capture plan.
+   */
+  void fill(RegexMatcher matcher) {
+    for (int step = 0; step < plan.length; step++) {
+      int id = schema.fieldOf(step);
+      if (starts[id] < 0) {
+        starts[id] = matcher.start(plan[step].group);
+        ends[id] = matcher.end(plan[step].group);
+      }
+    }
+    matched = true;
+  }
+
+  /**
+   * Copy the offsets of the groups of a successful match, groups found by name.
+   */
+  void fill(Matcher matcher) {
+    for (int step = 0; step < plan.length; step++) {
+      int id = schema.fieldOf(step);
+      if (starts[id] < 0) {
+        starts[id] = matcher.start(plan[step].groupName);
+        ends[id] = matcher.end(plan[step].groupName);
+      }
+    }
+    matched = true;
+  }
+
+  void abort() {
+    aborted = true;
+  }
+
+  /**
+   * Wrap the line to match it within the given budget, reusing the wrapper of the previous line.
+   */
+  CharSequence budgeted(CharSequence text, MatchBudget budget) {
+    if (budgeted == null) {
+      budgeted = new BudgetedCharSequence();
+    }
+    return budgeted.reset(text, budget);
+  }
+
+  /**
+   * Get the {@code Grok} which filled this record last, or created it.
+   */
+  public Grok getGrok() {
+    return grok;
+  }
+
+  public GrokSchema getSchema() {
+    return schema;
+  }
+
+  /**
+   * Get the last line matched into this record, null before the first one.
+   */
+  public CharSequence getSubject() {
+    return subject;
+  }
+
+  /**
+   * Whether the last line matched, the fields are empty otherwise.
+   */
+  public boolean isMatched() {
+    return matched;
+  }
+
+  /**
+   * Whether the last match was given up because it exceeded the {@link MatchBudget} of the {@code Grok}.
+   */
+  public boolean isAborted() {
+    return aborted;
+  }
+
+  /**
+   * Whether the field was captured from the last line.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   */
+  public boolean has(int id) {
+    return starts[id] >= 0;
+  }
+
+  /**
+   * Get the index of the first char of the field in the line, -1 when it was not captured.
+   */
+  public int getStart(int id) {
+    return starts[id];
+  }
+
+  /**
+   * Get the index after the last char of the field in the line, -1 when it was not captured.
+   */
+  public int getEnd(int id) {
+    return ends[id];
+  }
+
+  /**
+   * Get the text of the field, unquoted as by {@link Match#capture()}.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   * @return text of the field, null when it was not captured
+   */
+  public String getString(int id) {
+    if (starts[id] < 0) {
+      return null;
+    }
+    ValueDictionary[] dictionaries = grok.dictionaries();
+    if (dictionaries != null && dictionaries[id] != null) {
+      return dictionaries[id].intern(subject, CharSlice.unquotedStart(subject, starts[id], ends[id]),
+          CharSlice.unquotedEnd(subject, starts[id], ends[id]));
+    }
+    return Match.cleanString(subject.subSequence(starts[id], ends[id]).toString());
+  }
+
+  /**
+   * Get the field as a slice of the line, unquoted as by {@link Match#capture()}: no char is copied.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   * @return slice of the field, null when it was not captured
+   */
+  public CharSlice getSlice(int id) {
+    return starts[id] < 0 ? null : CharSlice.unquoted(subject, starts[id], ends[id]);
+  }
+
+  /**
+   * Get the field as a decimal integer, parsed from the line without creating a string. The field of a
+   * {@link Converter.ILongConverter} is read as its value instead.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   * @return value of the field
+   * @throws NumberFormatException when the field was not captured or is not an integer, see
+   *     {@link #checkLong(int)} to test it first
+   */
+  public long getLong(int id) {
+    ParseStatus status = checkLong(id);
+    if (status == ParseStatus.MISSING) {
+      throw new NumberFormatException("Field " + schema.getName(id) + " was not captured");
+    }
+    if (status != ParseStatus.PARSED) {
+      throw new NumberFormatException("For input string: \"" + subject.subSequence(starts[id], ends[id]) + "\"");
+    }
+    return parseLong(id);
+  }
+
+  /**
+   * Whether the field can be read by {@link #getLong(int)}, as {@link Match#getParseStatus()} after
+   * {@link Match#getLong(String)}: placeholders such as {@code "-"} are {@link ParseStatus#INVALID}.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   * @return {@link ParseStatus#PARSED} when {@link #getLong(int)} returns the value of the field
+   */
+  public ParseStatus checkLong(int id) {
+    return checkLong(id, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Check that a field is captured and is an integer within the given bounds, see {@link #getLong(int)}.
+   */
+  ParseStatus checkLong(int id, long min, long max) {
+    if (starts[id] < 0) {
+      return ParseStatus.MISSING;
+    }
+    return Numbers.checkLong(converters[id], subject, starts[id], ends[id], min, max);
+  }
+
+  /**
+   * Parse a field checked by {@link #checkLong(int, long, long)}.
+   */
+  long parseLong(int id) {
+    return Numbers.parseLong(converters[id], subject, starts[id], ends[id]);
+  }
+
+  /**
+   * Get the field as a floating point number.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   * @return value of the field
+   * @throws NumberFormatException when the field was not captured or is not a number, see
+   *     {@link #checkDouble(int)} to test it first
+   */
+  public double getDouble(int id) {
+    ParseStatus status = checkDouble(id);
+    if (status == ParseStatus.MISSING) {
+      throw new NumberFormatException("Field " + schema.getName(id) + " was not captured");
+    }
+    if (status == ParseStatus.INVALID) {
+      throw new NumberFormatException("For input string: \"" + subject.subSequence(starts[id], ends[id]) + "\"");
+    }
+    return Numbers.parseDouble(subject, starts[id], ends[id]);
+  }
+
+  /**
+   * Whether the field can be read by {@link #getDouble(int)}, as {@link Match#getParseStatus()} after
+   * {@link Match#getDouble(String)}.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   * @return {@link ParseStatus#PARSED} when {@link #getDouble(int)} returns the value of the field
+   */
+  public ParseStatus checkDouble(int id) {
+    if (starts[id] < 0) {
+      return ParseStatus.MISSING;
+    }
+    return Numbers.checkDouble(subject, starts[id], ends[id]);
+  }
+
+  /**
+   * Get the field as a boolean: true when it is {@code "true"}, ignoring case, as {@link Boolean#parseBoolean}.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   * @return value of the field, false when it was not captured
+   */
+  public boolean getBoolean(int id) {
+    return starts[id] >= 0 && Numbers.parseBoolean(subject, starts[id], ends[id]);
+  }
+
+  /**
+   * Get the field converted to the type of the schema, as in {@link Match#capture()}: the text of the
+   * field when its conversion fails. The value is kept until the next line.
+   *
+   * @param id : field id from the {@link GrokSchema}
+   * @return value of the field, null when it was not captured
+   */
+  public Object getValue(int id) {
+    if (starts[id] < 0) {
+      return null;
+    }
+    if (valueStamps[id] == stamp) {
+      return values[id];
+    }
+    Object value = null;
+    if (converters[id] != null) {
+      value = converters[id].convert(subject, starts[id], ends[id]);
+    }
+    if (converters[id] == null || value instanceof Converter.Failure) {
+      value = subject.subSequence(starts[id], ends[id]).toString();
+    }
+    if (value instanceof String) {
+      value = Match.cleanString((String) value);
+    }
+    values[id] = value;
+    valueStamps[id] = stamp;
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder fields = new StringBuilder("GrokRecord{");
+    for (int id = 0; id < schema.size(); id++) {
+      if (has(id)) {
+        fields.append(fields.length() > 11 ? ", " : "").append(schema.getName(id)).append('=').append(getString(id));
+      }
+    }
+    return fields.append('}').toString();
+  }
+}
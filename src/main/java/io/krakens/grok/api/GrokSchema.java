@@ -0,0 +1,134 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * {@code GrokSchema} lists the fields a {@code Grok} captures: their names, their types and the id
+ * which identifies them in a {@link GrokRecord}.
+ * <br>
+ * Ids number the fields from 0 in the order of the pattern. A name captured by several groups, such as
+ * the two alternatives of {@code %{A:value}|%{B:value}}, is a single field.
+ *
+ * @since 0.1.10
+ */
+public final class GrokSchema implements Serializable {
+
+  private final String[] names;
+  private final Converter.Type[] types;
+  private final Map<String, Integer> ids;
+  /** Field id of each step of the capture plan. */
+  private final int[] planFields;
+  /** Steps of the capture plan of each field. */
+  private final int[][] fieldSteps;
+
+  private GrokSchema(String[] names, Converter.Type[] types, Map<String, Integer> ids, int[] planFields) {
+    this.names = names;
+    this.types = types;
+    this.ids = ids;
+    this.planFields = planFields;
+    this.fieldSteps = new int[names.length][];
+    for (int id = 0; id < names.length; id++) {
+      int current = id;
+      fieldSteps[id] = IntStream.range(0, planFields.length).filter(step -> planFields[step] == current).toArray();
+    }
+  }
+
+  /**
+   * Schema of the fields of the given capture plan.
+   *
+   * @param plan : capture plan of a {@code Grok}
+   * @param groupTypes : type of the typed fields, by name
+   */
+  static GrokSchema of(CaptureField[] plan, Map<String, Converter.Type> groupTypes) {
+    Map<String, Integer> ids = new HashMap<>();
+    List<String> names = new ArrayList<>();
+    int[] planFields = new int[plan.length];
+    for (int i = 0; i < plan.length; i++) {
+      String name = plan[i].key;
+      planFields[i] = ids.computeIfAbsent(name, key -> {
+        names.add(key);
+        return names.size() - 1;
+      });
+    }
+    Converter.Type[] types = new Converter.Type[names.size()];
+    for (int id = 0; id < types.length; id++) {
+      types[id] = groupTypes.getOrDefault(names.get(id), Converter.Type.STRING);
+    }
+    return new GrokSchema(names.toArray(new String[0]), types, Collections.unmodifiableMap(ids), planFields);
+  }
+
+  /**
+   * Number of fields.
+   */
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * Get the names of the fields, in the order of their ids.
+   */
+  public List<String> getNames() {
+    return Collections.unmodifiableList(Arrays.asList(names));
+  }
+
+  /**
+   * Get the name of a field.
+   *
+   * @param id : field id
+   * @throws IndexOutOfBoundsException when there is no such field
+   */
+  public String getName(int id) {
+    return names[id];
+  }
+
+  /**
+   * Get the id of a field, to read it from a {@link GrokRecord}.
+   *
+   * @param name : field name
+   * @return field id, -1 when the pattern does not capture this name
+   */
+  public int getId(String name) {
+    Integer id = ids.get(name);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Get the type of a field, {@link Converter.Type#STRING} when the pattern does not give one.
+   *
+   * @param id : field id
+   * @throws IndexOutOfBoundsException when there is no such field
+   */
+  public Converter.Type getType(int id) {
+    return types[id];
+  }
+
+  /**
+   * Field id of the given step of the capture plan.
+   */
+  int fieldOf(int planStep) {
+    return planFields[planStep];
+  }
+
+  /**
+   * Steps of the capture plan of the given field, in order.
+   */
+  int[] stepsOf(int id) {
+    return fieldSteps[id];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder fields = new StringBuilder("GrokSchema{");
+    for (int id = 0; id < names.length; id++) {
+      fields.append(id == 0 ? "" : ", ").append(names[id]).append(':').append(types[id].name().toLowerCase());
+    }
+    return fields.append('}').toString();
+  }
+}
@@ -0,0 +1,436 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code GrokSet} matches a line against an ordered list of {@link Grok}, the first one matching wins,
+ * like the {@code match => [...]} list of Logstash.
+ * <br>
+ * Every member is identified by an id and its position in the list. A {@code GrokSet} is created by
+ * {@link GrokCompiler#compileSet(Map)}, its members are expanded against the same pattern
+ * definitions and share the compiler's tokenized definitions and cache.
+ * <br>
+ * Before any regex runs, a single pass over the line looks for the {@link Grok#getRequiredLiterals()
+ * required literals} of every pattern: the patterns missing one of theirs are skipped, and a line
+ * holding none of the literals of any pattern is rejected without running a regex at all.
+ * <br>
+ * The patterns are tried in the order of the list, unless {@link #enableAdaptiveOrdering(Duration)
+ * adaptive ordering} is enabled: the patterns winning most often are then tried first. When several
+ * patterns may match the same line, the one tried first wins, so patterns whose relative order matters
+ * must be {@link #setPinned(Collection) pinned}.
+ * <br>
+ * A combined set, see {@link GrokCompiler#compileSet(Map, java.time.ZoneId, boolean, Grok.MatchMode, boolean)},
+ * joins its patterns into a single regex applied once per line, with the same results as trying the
+ * patterns in the order of the list, which can't change.
+ *
+ * @since 0.1.10
+ */
+public class GrokSet implements Serializable {
+
+  private final String[] ids;
+  private final Grok[] members;
+  private final LiteralIndex literalIndex;
+  /**
+   * Single regex of every pattern, null when the patterns are tried one after another.
+   */
+  private final CombinedRegex combinedRegex;
+  private volatile MatchBudget matchBudget;
+  private final LongAdder abortedMatchCount = new LongAdder();
+
+  /**
+   * Lines won by each pattern, striped to keep concurrent matches from contending.
+   */
+  private final LongAdder[] hits;
+  /**
+   * Order the patterns are tried in, replaced as a whole on reordering.
+   */
+  private volatile int[] order;
+  private volatile boolean[] pinned;
+  /**
+   * Interval between two reorderings in nanoseconds, 0 when the order is fixed.
+   */
+  private volatile long reorderInterval;
+  private volatile long nextReorder;
+  private final AtomicBoolean reordering = new AtomicBoolean();
+  /**
+   * Decayed hit counts and hits already accounted for, only used while holding {@link #reordering}.
+   */
+  private final double[] scores;
+  private final long[] accountedHits;
+
+  GrokSet(List<String> ids, List<Grok> members) {
+    this(ids, members, null);
+  }
+
+  /**
+   * Create a set combining its patterns with the given engine, or trying them one after another when
+   * the engine is null.
+   */
+  GrokSet(List<String> ids, List<Grok> members, RegexEngine combiningEngine) {
+    if (ids.size() != members.size()) {
+      throw new IllegalArgumentException("There should be one id per pattern");
+    }
+    if (ids.isEmpty()) {
+      throw new IllegalArgumentException("{patterns} should not be empty");
+    }
+    this.ids = ids.toArray(new String[0]);
+    this.members = members.toArray(new Grok[0]);
+    List<List<String>> literals = new ArrayList<>(members.size());
+    for (Grok member : members) {
+      literals.add(member.getRequiredLiterals());
+    }
+    this.literalIndex = new LiteralIndex(literals);
+    this.hits = new LongAdder[this.members.length];
+    for (int i = 0; i < hits.length; i++) {
+      hits[i] = new LongAdder();
+    }
+    this.order = initialOrder();
+    this.pinned = new boolean[this.members.length];
+    this.scores = new double[this.members.length];
+    this.accountedHits = new long[this.members.length];
+    this.combinedRegex = combiningEngine == null ? null : new CombinedRegex(this.ids, this.members, combiningEngine);
+  }
+
+  private int[] initialOrder() {
+    int[] initial = new int[members.length];
+    for (int i = 0; i < initial.length; i++) {
+      initial[i] = i;
+    }
+    return initial;
+  }
+
+  /**
+   * Number of patterns of the set.
+   */
+  public int size() {
+    return members.length;
+  }
+
+  /**
+   * Get the ids of the patterns, in the order they are tried.
+   */
+  public List<String> getIds() {
+    return Collections.unmodifiableList(Arrays.asList(ids));
+  }
+
+  /**
+   * Get the compiled patterns, in the order they are tried.
+   */
+  public List<Grok> getGroks() {
+    return Collections.unmodifiableList(Arrays.asList(members));
+  }
+
+  /**
+   * Get the id of the pattern at the given position.
+   */
+  public String getId(int index) {
+    return ids[index];
+  }
+
+  /**
+   * Get the compiled pattern with the given id.
+   *
+   * @param id : pattern id
+   * @return the {@code Grok}, or null when the id is not in the set
+   */
+  public Grok getGrok(String id) {
+    for (int i = 0; i < ids.length; i++) {
+      if (ids[i].equals(id)) {
+        return members[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the ids of the patterns in the order they are currently tried, which is the order of the list
+   * unless adaptive ordering is enabled.
+   */
+  public List<String> getOrder() {
+    List<String> current = new ArrayList<>(members.length);
+    for (int index : order) {
+      current.add(ids[index]);
+    }
+    return current;
+  }
+
+  /**
+   * Number of lines won by the pattern with the given id.
+   *
+   * @throws IllegalArgumentException when the id is not in the set
+   */
+  public long getHitCount(String id) {
+    return hits[indexOf(id)].sum();
+  }
+
+  private int indexOf(String id) {
+    for (int i = 0; i < ids.length; i++) {
+      if (ids[i].equals(id)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("No pattern with id '" + id + "' in the set");
+  }
+
+  /**
+   * Pins the patterns with the given ids: whatever their hit counts, they are always tried in the order
+   * of the list relative to each other. The other patterns may move around and between them.
+   *
+   * @param pinnedIds : ids of the patterns to pin, the previously pinned patterns are unpinned
+   * @throws IllegalArgumentException when an id is not in the set
+   */
+  public void setPinned(Collection<String> pinnedIds) {
+    boolean[] next = new boolean[members.length];
+    for (String id : pinnedIds) {
+      next[indexOf(id)] = true;
+    }
+    pinned = next;
+  }
+
+  /**
+   * Tries the patterns winning most often first, to lower the number of regexes run per line.
+   * The hit counts are checked every {@code interval}, older hits weighing half as much at each check.
+   *
+   * @param interval : time between two reorderings
+   * @throws IllegalArgumentException when the interval is not positive
+   * @throws IllegalStateException when the set is combined
+   */
+  public void enableAdaptiveOrdering(Duration interval) {
+    if (isCombined()) {
+      throw new IllegalStateException("The patterns of a combined set are tried in the order of the list");
+    }
+    long nanos = interval.toNanos();
+    if (nanos <= 0) {
+      throw new IllegalArgumentException("{interval} should be positive");
+    }
+    nextReorder = System.nanoTime() + nanos;
+    reorderInterval = nanos;
+  }
+
+  /**
+   * Goes back to trying the patterns in the order of the list.
+   */
+  public void disableAdaptiveOrdering() {
+    reorderInterval = 0;
+    order = initialOrder();
+  }
+
+  public boolean isAdaptiveOrderingEnabled() {
+    return reorderInterval != 0;
+  }
+
+  /**
+   * Reorders the patterns now by decayed hit count, most frequent winners first. Pinned patterns keep
+   * their relative order, ties keep the order of the list. Does nothing when another thread is reordering,
+   * or when the set is combined.
+   */
+  public void reorder() {
+    if (isCombined() || !reordering.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      for (int i = 0; i < members.length; i++) {
+        long total = hits[i].sum();
+        scores[i] = scores[i] / 2 + (total - accountedHits[i]);
+        accountedHits[i] = total;
+      }
+      boolean[] pinnedNow = pinned;
+      List<Integer> free = new ArrayList<>();
+      List<Integer> chain = new ArrayList<>();
+      for (int i = 0; i < members.length; i++) {
+        (pinnedNow[i] ? chain : free).add(i);
+      }
+      free.sort((left, right) -> compareScores(left, right));
+      // merge: the next pinned pattern goes before every free pattern with a lower score
+      int[] next = new int[members.length];
+      int size = 0;
+      int freeIndex = 0;
+      int chainIndex = 0;
+      while (freeIndex < free.size() || chainIndex < chain.size()) {
+        if (chainIndex == chain.size()
+            || freeIndex < free.size() && compareScores(free.get(freeIndex), chain.get(chainIndex)) < 0) {
+          next[size++] = free.get(freeIndex++);
+        } else {
+          next[size++] = chain.get(chainIndex++);
+        }
+      }
+      order = next;
+    } finally {
+      reordering.set(false);
+    }
+  }
+
+  private int compareScores(int left, int right) {
+    int compared = Double.compare(scores[right], scores[left]);
+    return compared != 0 ? compared : Integer.compare(left, right);
+  }
+
+  private void count(int index) {
+    hits[index].increment();
+    long interval = reorderInterval;
+    if (interval != 0) {
+      long now = System.nanoTime();
+      if (now - nextReorder >= 0) {
+        nextReorder = now + interval;
+        reorder();
+      }
+    }
+  }
+
+  /**
+   * Whether the patterns are joined into a single regex.
+   */
+  public boolean isCombined() {
+    return combinedRegex != null;
+  }
+
+  /**
+   * Bounds the work of every match of every pattern of the set, see {@link Grok#withMatchBudget(MatchBudget)}.
+   * The patterns themselves are left as is, see {@link Grok} about shared instances: the budget only applies
+   * to the matches of this set.
+   *
+   * @param matchBudget : budget, or null to remove it
+   */
+  public void setMatchBudget(MatchBudget matchBudget) {
+    this.matchBudget = matchBudget;
+  }
+
+  /**
+   * Get the number of lines whose match was aborted by the {@link MatchBudget} of this set. The aborts are
+   * not counted by the patterns of the set.
+   */
+  public long getAbortedMatchCount() {
+    return abortedMatchCount.sum();
+  }
+
+  /**
+   * Match the given <tt>log</tt> with the patterns and return the captures of the first matching pattern.
+   *
+   * @param log : log to match
+   * @return map containing matches, empty when no pattern matches
+   */
+  public Map<String, Object> capture(String log) {
+    return match(log).capture();
+  }
+
+  /**
+   * Match the given <tt>text</tt> with the patterns, in the current order, until one matches.
+   * When the match of a pattern is aborted by the {@link MatchBudget}, the later patterns are not tried,
+   * since one of them matching would hide that the aborted one may have matched first: the whole set is
+   * aborted and {@link GrokSetMatch#ABORTED} is returned.
+   *
+   * @param text : Single line of log
+   * @return the first matching pattern and its {@link Match}, {@link GrokSetMatch#EMPTY} when none matches,
+   *     {@link GrokSetMatch#ABORTED} when the {@link MatchBudget} is exceeded
+   */
+  public GrokSetMatch match(CharSequence text) {
+    if (text == null) {
+      return GrokSetMatch.EMPTY;
+    }
+    return match(text, 0, text.length());
+  }
+
+  /**
+   * Match the <tt>[start, end)</tt> range of the given <tt>buffer</tt> with the patterns, in order,
+   * until one matches. See {@link Grok#match(CharSequence, int, int)}.
+   *
+   * @param buffer : text holding the line
+   * @param start : index of the first char of the line
+   * @param end : index after the last char of the line
+   * @return the first matching pattern and its {@link Match}, {@link GrokSetMatch#EMPTY} when none matches,
+   *     {@link GrokSetMatch#ABORTED} when the {@link MatchBudget} is exceeded
+   */
+  public GrokSetMatch match(CharSequence buffer, int start, int end) {
+    if (buffer == null) {
+      return GrokSetMatch.EMPTY;
+    }
+    long[] literals = literalIndex.isEmpty() ? null : literalIndex.find(buffer, start, end);
+    if (combinedRegex != null) {
+      return matchCombined(buffer, start, end, literals);
+    }
+    MatchBudget budget = matchBudget;
+    for (int i : order) {
+      if (literals != null && !literalIndex.isCandidate(i, literals)) {
+        continue;
+      }
+      Match match = members[i].match(buffer, start, end, budget);
+      if (match == Match.ABORTED) {
+        abortedMatchCount.increment();
+        return GrokSetMatch.ABORTED;
+      }
+      if (!match.isNull()) {
+        count(i);
+        return new GrokSetMatch(ids[i], i, members[i], match);
+      }
+    }
+    return GrokSetMatch.EMPTY;
+  }
+
+  private GrokSetMatch matchCombined(CharSequence buffer, int start, int end, long[] literals) {
+    if (literals != null) {
+      boolean candidate = false;
+      for (int i = 0; i < members.length && !candidate; i++) {
+        candidate = literalIndex.isCandidate(i, literals);
+      }
+      if (!candidate) {
+        return GrokSetMatch.EMPTY;
+      }
+    }
+    MatchBudget budget = matchBudget;
+    CharSequence input = budget == null ? buffer : new BudgetedCharSequence(buffer, budget);
+    MatcherPool pool = combinedRegex.getMatcherPool();
+    RegexMatcher matcher = pool.acquire();
+    try {
+      int index = combinedRegex.match(matcher, input, start, end);
+      if (index < 0) {
+        return GrokSetMatch.EMPTY;
+      }
+      count(index);
+      Match match = new Match(buffer, members[index], start, end, matcher, combinedRegex.firstGroup(index));
+      return new GrokSetMatch(ids[index], index, members[index], match);
+    } catch (BudgetedCharSequence.BudgetExceededException e) {
+      abortedMatchCount.increment();
+      return GrokSetMatch.ABORTED;
+    } finally {
+      pool.release(matcher);
+    }
+  }
+
+  /**
+   * Match the remaining bytes of the given <tt>buffer</tt>, decoded as UTF-8, with the patterns.
+   * The bytes are decoded at most once, see {@link Grok#match(ByteBuffer)}.
+   *
+   * @param buffer : Single line of log
+   * @return the first matching pattern and its {@link Match}, or {@link GrokSetMatch#EMPTY}
+   */
+  public GrokSetMatch match(ByteBuffer buffer) {
+    if (buffer == null) {
+      return GrokSetMatch.EMPTY;
+    }
+    return match(ByteCharSequence.of(buffer));
+  }
+
+  /**
+   * Match every line of the given list.
+   *
+   * @param logs : list of log
+   * @return the match of each line, in the same order
+   */
+  public List<GrokSetMatch> match(List<String> logs) {
+    List<GrokSetMatch> matched = new ArrayList<>(logs.size());
+    for (String log : logs) {
+      matched.add(match(log));
+    }
+    return matched;
+  }
+}
@@ -0,0 +1,82 @@
+package io.krakens.grok.api;
+
+import java.util.Map;
+
+/**
+ * {@code GrokSetMatch} is the result of {@link GrokSet#match(CharSequence)}: the first pattern
+ * of the set which matched the line, and its {@link Match}.
+ *
+ * @since 0.1.10
+ */
+public class GrokSetMatch {
+
+  /**
+   * No pattern of the set matched.
+   */
+  public static final GrokSetMatch EMPTY = new GrokSetMatch(null, -1, null, Match.EMPTY);
+
+  /**
+   * A combined set gave up the line because it exceeded the {@link MatchBudget} of the set.
+   */
+  public static final GrokSetMatch ABORTED = new GrokSetMatch(null, -1, null, Match.ABORTED);
+
+  private final String id;
+  private final int index;
+  private final Grok grok;
+  private final Match match;
+
+  GrokSetMatch(String id, int index, Grok grok, Match match) {
+    this.id = id;
+    this.index = index;
+    this.grok = grok;
+    this.match = match;
+  }
+
+  /**
+   * Get the id of the matching pattern, null when no pattern matched.
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Get the position of the matching pattern in the set, -1 when no pattern matched.
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Get the matching pattern, null when no pattern matched.
+   */
+  public Grok getGrok() {
+    return grok;
+  }
+
+  /**
+   * Get the match of the matching pattern, {@link Match#EMPTY} when no pattern matched.
+   */
+  public Match getMatch() {
+    return match;
+  }
+
+  /**
+   * Captures of the matching pattern, see {@link Match#capture()}.
+   */
+  public Map<String, Object> capture() {
+    return match.capture();
+  }
+
+  public boolean isNull() {
+    return grok == null;
+  }
+
+  public boolean isAborted() {
+    return this == ABORTED;
+  }
+
+  @Override
+  public String toString() {
+    return isNull() ? "GrokSetMatch{}" : "GrokSetMatch{id=" + id + ", index=" + index + '}';
+  }
+}
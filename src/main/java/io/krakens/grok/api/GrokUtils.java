@@ -44,6 +44,94 @@ public class GrokUtils {
     return namedGroups;
   }
 
+  /**
+   * Get the group number of every named group of a regex, in the order of the regex.
+   *
+   * @param regex : regular expression
+   * @return named group numbers, or null when the regex uses the comments flag and can't be analyzed
+   * @since 0.1.10
+   */
+  public static Map<String, Integer> getNameGroupIndexes(String regex) {
+    return scanGroups(regex, null);
+  }
+
+  /**
+   * Turns the named groups of a regex into unnamed groups, the group numbers don't change.
+   *
+   * @return the regex without group names, or null when it can't be analyzed or refers to groups
+   */
+  static String unnameGroups(String regex) {
+    StringBuilder unnamed = new StringBuilder(regex.length());
+    return scanGroups(regex, unnamed) == null ? null : unnamed.toString();
+  }
+
+  /**
+   * Numbers the groups of a regex, skipping escapes and char classes. When {@code unnamed} is given,
+   * the regex is copied into it with its group names removed, and back references make the scan fail.
+   */
+  private static Map<String, Integer> scanGroups(String regex, StringBuilder unnamed) {
+    Map<String, Integer> indexes = new LinkedHashMap<>();
+    int length = regex.length();
+    int group = 0;
+    int classDepth = 0;
+    int copied = 0;
+    for (int i = 0; i < length; i++) {
+      char current = regex.charAt(i);
+      if (current == '\\') {
+        if (i + 1 < length && regex.charAt(i + 1) == 'Q') {
+          int quoteEnd = regex.indexOf("\\E", i + 2);
+          i = quoteEnd < 0 ? length : quoteEnd + 1;
+        } else {
+          if (unnamed != null && i + 1 < length && classDepth == 0
+              && (regex.charAt(i + 1) == 'k' || regex.charAt(i + 1) >= '1' && regex.charAt(i + 1) <= '9')) {
+            return null;
+          }
+          i++;
+        }
+      } else if (current == '[') {
+        classDepth++;
+        // a ']' right after '[' or '[^' is a literal
+        if (i + 1 < length && regex.charAt(i + 1) == '^') {
+          i++;
+        }
+        if (i + 1 < length && regex.charAt(i + 1) == ']') {
+          i++;
+        }
+      } else if (classDepth > 0) {
+        if (current == ']') {
+          classDepth--;
+        }
+      } else if (current == '(') {
+        if (i + 1 < length && regex.charAt(i + 1) == '?') {
+          if (i + 3 < length && regex.charAt(i + 2) == '<' && Character.isLetter(regex.charAt(i + 3))) {
+            int nameEnd = regex.indexOf('>', i + 3);
+            if (nameEnd < 0) {
+              return null;
+            }
+            indexes.put(regex.substring(i + 3, nameEnd), ++group);
+            if (unnamed != null) {
+              unnamed.append(regex, copied, i + 1);
+              copied = nameEnd + 1;
+            }
+            i = nameEnd;
+          } else {
+            for (int j = i + 2; j < length && regex.charAt(j) != '-' && Character.isLetter(regex.charAt(j)); j++) {
+              if (regex.charAt(j) == 'x') {
+                return null;
+              }
+            }
+          }
+        } else {
+          group++;
+        }
+      }
+    }
+    if (unnamed != null) {
+      unnamed.append(regex, copied, length);
+    }
+    return indexes;
+  }
+
   public static Map<String, String> namedGroups(Matcher matcher, Set<String> groupNames) {
     Map<String, String> namedGroups = new LinkedHashMap<>();
     for (String groupName : groupNames) {
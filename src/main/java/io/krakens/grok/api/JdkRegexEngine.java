@@ -0,0 +1,92 @@
+package io.krakens.grok.api;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@code JdkRegexEngine} compiles regexes with {@link Pattern}, the default {@link RegexEngine}.
+ *
+ * @since 0.1.10
+ */
+public final class JdkRegexEngine implements RegexEngine {
+
+  public static final JdkRegexEngine INSTANCE = new JdkRegexEngine();
+
+  private JdkRegexEngine() {}
+
+  @Override
+  public CompiledRegex compile(String regex) {
+    return new JdkCompiledRegex(Pattern.compile(regex));
+  }
+
+  private Object readResolve() {
+    return INSTANCE;
+  }
+
+  static final class JdkCompiledRegex implements CompiledRegex {
+    private final Pattern pattern;
+    private final int groupCount;
+
+    JdkCompiledRegex(Pattern pattern) {
+      this.pattern = pattern;
+      this.groupCount = pattern.matcher("").groupCount();
+    }
+
+    Pattern getPattern() {
+      return pattern;
+    }
+
+    @Override
+    public String getRegex() {
+      return pattern.pattern();
+    }
+
+    @Override
+    public int groupCount() {
+      return groupCount;
+    }
+
+    @Override
+    public RegexMatcher matcher() {
+      return new JdkRegexMatcher(pattern.matcher(""));
+    }
+  }
+
+  private static final class JdkRegexMatcher implements RegexMatcher {
+    private final Matcher matcher;
+
+    JdkRegexMatcher(Matcher matcher) {
+      this.matcher = matcher;
+    }
+
+    @Override
+    public boolean find(CharSequence text, int start, int end) {
+      return matcher.reset(text).region(start, end).find();
+    }
+
+    @Override
+    public boolean lookingAt(CharSequence text, int start, int end) {
+      return matcher.reset(text).region(start, end).lookingAt();
+    }
+
+    @Override
+    public boolean matches(CharSequence text, int start, int end) {
+      return matcher.reset(text).region(start, end).matches();
+    }
+
+    @Override
+    public int start(int group) {
+      return matcher.start(group);
+    }
+
+    @Override
+    public int end(int group) {
+      return matcher.end(group);
+    }
+
+    @Override
+    public void reset() {
+      matcher.reset("");
+    }
+  }
+}
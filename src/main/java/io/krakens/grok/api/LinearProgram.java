@@ -0,0 +1,458 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * {@code LinearProgram} is a regex compiled by the {@link LinearRegexEngine}: a Thompson automaton
+ * simulated as a Pike VM.
+ * <br>
+ * Every thread of the automaton advances in lock step, one char of the text at a time, and no state is
+ * visited twice for the same char: matching costs at most the length of the text times the size of the
+ * program. Threads are kept in priority order so the match, and the captured groups, are the ones a
+ * backtracking engine would report first.
+ *
+ * @since 0.1.10
+ */
+final class LinearProgram implements CompiledRegex {
+
+  static final int CHAR = 0;
+  static final int SET = 1;
+  static final int SPLIT = 2;
+  static final int JUMP = 3;
+  static final int SAVE = 4;
+  static final int ASSERT = 5;
+  static final int MATCH = 6;
+
+  private static final int FIND = 0;
+  private static final int LOOKING_AT = 1;
+  private static final int MATCHES = 2;
+
+  private final String regex;
+  private final int groupCount;
+  /** Instruction codes. */
+  private final int[] codes;
+  /** Char for CHAR, set for SET, target for SPLIT (preferred) and JUMP, slot for SAVE, assertion for ASSERT. */
+  private final int[] arguments;
+  /** Second, less preferred, target of SPLIT. */
+  private final int[] alternatives;
+  private final CharSet[] sets;
+  private final Assertion[] assertions;
+
+  LinearProgram(String regex, int groupCount, int[] codes, int[] arguments, int[] alternatives,
+      CharSet[] sets, Assertion[] assertions) {
+    this.regex = regex;
+    this.groupCount = groupCount;
+    this.codes = codes;
+    this.arguments = arguments;
+    this.alternatives = alternatives;
+    this.sets = sets;
+    this.assertions = assertions;
+  }
+
+  @Override
+  public String getRegex() {
+    return regex;
+  }
+
+  @Override
+  public int groupCount() {
+    return groupCount;
+  }
+
+  @Override
+  public RegexMatcher matcher() {
+    return new LinearMatcher();
+  }
+
+  /**
+   * Estimates the heap retained by the program, sets and assertions included.
+   */
+  long estimateRetainedSize() {
+    long size = SizeEstimator.object(7) + 3 * (SizeEstimator.OBJECT + 4L * codes.length)
+        + SizeEstimator.array(sets.length) + SizeEstimator.array(assertions.length);
+    for (CharSet set : sets) {
+      size += SizeEstimator.object(2) + 16 + SizeEstimator.OBJECT + 4L * set.ranges.length;
+    }
+    for (Assertion assertion : assertions) {
+      size += SizeEstimator.object(2);
+      if (assertion.sequence != null) {
+        size += SizeEstimator.array(assertion.sequence.length);
+      }
+    }
+    return size;
+  }
+
+  static boolean isLineTerminator(char value) {
+    return value == '\n' || value == '\r' || value == '\u0085' || (value | 1) == '\u2029';
+  }
+
+  static boolean isWord(char value) {
+    return value == '_' || Character.isLetterOrDigit(value);
+  }
+
+  /**
+   * A set of chars, a bitmap for ASCII and sorted ranges for the other chars.
+   */
+  static final class CharSet implements Serializable {
+    private final long low;
+    private final long high;
+    /** Inclusive [from, to] pairs of chars above ASCII, sorted and disjoint. */
+    private final int[] ranges;
+    private final boolean negated;
+
+    CharSet(long low, long high, int[] ranges, boolean negated) {
+      this.low = low;
+      this.high = high;
+      this.ranges = ranges;
+      this.negated = negated;
+    }
+
+    boolean contains(char value) {
+      boolean contained;
+      if (value < 64) {
+        contained = (low & (1L << value)) != 0;
+      } else if (value < 128) {
+        contained = (high & (1L << (value - 64))) != 0;
+      } else {
+        contained = false;
+        for (int i = 0; i < ranges.length && ranges[i] <= value; i += 2) {
+          if (value <= ranges[i + 1]) {
+            contained = true;
+            break;
+          }
+        }
+      }
+      return contained != negated;
+    }
+
+    long low() {
+      return low;
+    }
+
+    long high() {
+      return high;
+    }
+
+    int[] ranges() {
+      return ranges;
+    }
+
+    boolean isNegated() {
+      return negated;
+    }
+
+    CharSet negate() {
+      return new CharSet(low, high, ranges, !negated);
+    }
+
+    /**
+     * Get the same set, spelled out without the negated flag.
+     */
+    CharSet complement() {
+      if (!negated) {
+        return this;
+      }
+      int[] complement = new int[ranges.length + 2];
+      int size = 0;
+      int from = 128;
+      for (int i = 0; i < ranges.length; i += 2) {
+        if (ranges[i] > from) {
+          complement[size++] = from;
+          complement[size++] = ranges[i] - 1;
+        }
+        from = ranges[i + 1] + 1;
+      }
+      if (from <= Character.MAX_VALUE) {
+        complement[size++] = from;
+        complement[size++] = Character.MAX_VALUE;
+      }
+      return new CharSet(~low, ~high, Arrays.copyOf(complement, size), false);
+    }
+  }
+
+  /**
+   * A zero width assertion, with the bounds of the region as the bounds of the text.
+   */
+  static final class Assertion implements Serializable {
+    /**
+     * {@code ^} and {@code \A}.
+     */
+    static final int BEGIN = 0;
+    /**
+     * {@code \z}.
+     */
+    static final int END = 1;
+    /**
+     * {@code $} and {@code \Z}: end, or before a final line terminator.
+     */
+    static final int END_OF_LINE = 2;
+    static final int WORD_BOUNDARY = 3;
+    static final int NOT_WORD_BOUNDARY = 4;
+    /** Lookahead of a fixed sequence of chars. */
+    static final int AHEAD = 5;
+    /** Lookbehind of a fixed sequence of chars. */
+    static final int BEHIND = 6;
+
+    private final int kind;
+    private final CharSet[] sequence;
+    private final boolean negated;
+
+    Assertion(int kind, CharSet[] sequence, boolean negated) {
+      this.kind = kind;
+      this.sequence = sequence;
+      this.negated = negated;
+    }
+
+    boolean holds(CharSequence text, int position, int start, int end) {
+      switch (kind) {
+        case BEGIN:
+          return position == start;
+        case END:
+          return position == end;
+        case END_OF_LINE:
+          return isEndOfLine(text, position, end);
+        case WORD_BOUNDARY:
+          return isWordBoundary(text, position, start, end);
+        case NOT_WORD_BOUNDARY:
+          return !isWordBoundary(text, position, start, end);
+        case AHEAD:
+          return sequenceAt(text, position, position + sequence.length <= end) != negated;
+        default:
+          return sequenceAt(text, position - sequence.length, position - sequence.length >= start) != negated;
+      }
+    }
+
+    private boolean sequenceAt(CharSequence text, int from, boolean inRange) {
+      if (!inRange) {
+        return false;
+      }
+      for (int i = 0; i < sequence.length; i++) {
+        if (!sequence[i].contains(text.charAt(from + i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean isEndOfLine(CharSequence text, int position, int end) {
+      if (position == end) {
+        return true;
+      }
+      if (position == end - 2) {
+        return text.charAt(position) == '\r' && text.charAt(position + 1) == '\n';
+      }
+      if (position == end - 1) {
+        char value = text.charAt(position);
+        if (value == '\n') {
+          // no match between \r\n
+          return position == 0 || text.charAt(position - 1) != '\r';
+        }
+        return isLineTerminator(value);
+      }
+      return false;
+    }
+
+    private static boolean isWordBoundary(CharSequence text, int position, int start, int end) {
+      boolean left = position > start && isWord(text.charAt(position - 1));
+      boolean right = position < end && isWord(text.charAt(position));
+      return left != right;
+    }
+  }
+
+  /**
+   * The Pike VM. Threads live in two lists, for the current and the next position; each list remembers
+   * the instructions already visited at its position and the groups of its threads.
+   */
+  private final class LinearMatcher implements RegexMatcher {
+    private final int slots = 2 * (groupCount + 1);
+    private ThreadList current = new ThreadList();
+    private ThreadList next = new ThreadList();
+    /** Groups of the thread being followed. */
+    private final int[] groups = new int[slots];
+    /** Groups of a new thread, always back to -1 once the thread is followed. */
+    private final int[] blank = new int[slots];
+    private final int[] matched = new int[slots];
+    private int[] stack = new int[32];
+    private CharSequence text;
+    private int start;
+    private int end;
+
+    LinearMatcher() {
+      Arrays.fill(blank, -1);
+      Arrays.fill(matched, -1);
+    }
+
+    @Override
+    public boolean find(CharSequence text, int start, int end) {
+      return run(text, start, end, FIND);
+    }
+
+    @Override
+    public boolean lookingAt(CharSequence text, int start, int end) {
+      return run(text, start, end, LOOKING_AT);
+    }
+
+    @Override
+    public boolean matches(CharSequence text, int start, int end) {
+      return run(text, start, end, MATCHES);
+    }
+
+    @Override
+    public int start(int group) {
+      return matched[2 * group];
+    }
+
+    @Override
+    public int end(int group) {
+      return matched[2 * group + 1];
+    }
+
+    @Override
+    public void reset() {
+      text = null;
+    }
+
+    private boolean run(CharSequence text, int start, int end, int mode) {
+      if (start < 0 || start > end || end > text.length()) {
+        throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + text.length());
+      }
+      this.text = text;
+      this.start = start;
+      this.end = end;
+      Arrays.fill(matched, -1);
+      boolean found = false;
+      current.clear();
+      for (int position = start; position <= end; position++) {
+        if (!found && (mode == FIND || position == start)) {
+          follow(current, 0, position, blank);
+        }
+        if (current.size == 0) {
+          if (found || mode != FIND) {
+            break;
+          }
+          current.clear();
+          continue;
+        }
+        boolean hasNext = position < end;
+        char value = hasNext ? text.charAt(position) : 0;
+        next.clear();
+        for (int thread = 0; thread < current.size; thread++) {
+          int pc = current.threads[thread];
+          switch (codes[pc]) {
+            case MATCH:
+              if (mode == MATCHES && position != end) {
+                break;
+              }
+              System.arraycopy(current.groups, thread * slots, matched, 0, slots);
+              found = true;
+              // threads of lower priority are dropped
+              thread = current.size;
+              break;
+            case CHAR:
+              if (hasNext && value == arguments[pc]) {
+                System.arraycopy(current.groups, thread * slots, groups, 0, slots);
+                follow(next, pc + 1, position + 1, groups);
+              }
+              break;
+            default:
+              if (hasNext && sets[arguments[pc]].contains(value)) {
+                System.arraycopy(current.groups, thread * slots, groups, 0, slots);
+                follow(next, pc + 1, position + 1, groups);
+              }
+              break;
+          }
+        }
+        ThreadList swap = current;
+        current = next;
+        next = swap;
+      }
+      this.text = null;
+      return found;
+    }
+
+    /**
+     * Follows the empty transitions from {@code pc}, adding the threads reached to the list in priority order.
+     * The groups are updated while following and restored afterwards.
+     */
+    private void follow(ThreadList list, int pc, int position, int[] groups) {
+      int top = 0;
+      stack[top++] = pc;
+      while (top > 0) {
+        int entry = stack[--top];
+        if (entry < 0) {
+          groups[-entry - 1] = stack[--top];
+          continue;
+        }
+        pc = entry;
+        while (list.visit(pc)) {
+          int code = codes[pc];
+          if (code == JUMP) {
+            pc = arguments[pc];
+          } else if (code == SPLIT) {
+            top = push(top, alternatives[pc]);
+            pc = arguments[pc];
+          } else if (code == SAVE) {
+            int slot = arguments[pc];
+            top = push(top, groups[slot]);
+            top = push(top, -slot - 1);
+            groups[slot] = position;
+            pc++;
+          } else if (code == ASSERT) {
+            if (!assertions[arguments[pc]].holds(text, position, start, end)) {
+              break;
+            }
+            pc++;
+          } else {
+            list.add(pc, groups);
+            break;
+          }
+        }
+      }
+    }
+
+    private int push(int top, int value) {
+      if (top == stack.length) {
+        stack = Arrays.copyOf(stack, top * 2);
+      }
+      stack[top] = value;
+      return top + 1;
+    }
+
+    private final class ThreadList {
+      /** Sparse set of the visited instructions. */
+      private final int[] sparse = new int[codes.length];
+      private final int[] dense = new int[codes.length];
+      private int visited;
+      /** Instruction and groups of the threads, in priority order. */
+      private int[] threads = new int[8];
+      private int[] groups = new int[8 * slots];
+      private int size;
+
+      void clear() {
+        visited = 0;
+        size = 0;
+      }
+
+      boolean visit(int pc) {
+        int index = sparse[pc];
+        if (index < visited && dense[index] == pc) {
+          return false;
+        }
+        sparse[pc] = visited;
+        dense[visited++] = pc;
+        return true;
+      }
+
+      void add(int pc, int[] values) {
+        if (size == threads.length) {
+          threads = Arrays.copyOf(threads, size * 2);
+          groups = Arrays.copyOf(groups, size * 2 * slots);
+        }
+        threads[size] = pc;
+        System.arraycopy(values, 0, groups, size * slots, slots);
+        size++;
+      }
+    }
+  }
+}
@@ -0,0 +1,767 @@
+package io.krakens.grok.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import io.krakens.grok.api.LinearProgram.Assertion;
+import io.krakens.grok.api.LinearProgram.CharSet;
+
+/**
+ * {@code LinearRegexEngine} compiles regexes into automata which match in a time linear in the length
+ * of the text, whatever the text: no line can make a {@link Grok} backtrack.
+ * <br>
+ * The supported subset of the {@code java.util.regex.Pattern} syntax covers literals, char classes,
+ * {@code .}, groups, alternations, greedy and reluctant quantifiers, {@code ^ $ \A \z \Z \b \B},
+ * lookarounds of a fixed sequence of chars such as {@code (?<![0-9])}, and atomic groups of a
+ * fixed sequence of chars. Back references, other lookarounds and atomic groups, possessive quantifiers,
+ * flags, and repetitions other than {@code ?} of a pattern which can match the empty string, such as
+ * {@code (a?)*} or {@code (\b){1,2}}, are not supported: {@link #compile(String)} throws an
+ * {@link IllegalArgumentException}, unless the engine was created {@link #withFallback(RegexEngine) with a
+ * fallback}.
+ * <br>
+ * The match and the groups are the ones of {@code java.util.regex}, except for the groups nested in a
+ * repetition other than {@code ?}: {@code java.util.regex} may keep their values from iterations it
+ * backtracked from, this engine reports the ones of the iterations of the match.
+ * <br>
+ * Chars are matched one UTF-16 char at a time, not one code point at a time.
+ *
+ * @since 0.1.10
+ */
+public final class LinearRegexEngine implements RegexEngine {
+
+  public static final LinearRegexEngine INSTANCE = new LinearRegexEngine(null);
+
+  /** Bound of the size of a program, repetitions are unrolled. */
+  private static final int MAX_INSTRUCTIONS = 1 << 16;
+
+  private final RegexEngine fallback;
+
+  private LinearRegexEngine(RegexEngine fallback) {
+    this.fallback = fallback;
+  }
+
+  /**
+   * Get a linear engine which compiles the regexes it does not support with the given engine.
+   *
+   * @param fallback : engine for the unsupported regexes, for instance {@link JdkRegexEngine#INSTANCE}
+   * @return a linear engine with a fallback
+   */
+  public static LinearRegexEngine withFallback(RegexEngine fallback) {
+    return new LinearRegexEngine(Objects.requireNonNull(fallback));
+  }
+
+  /**
+   * Whether the given regex is supported, i.e. whether it would be compiled by this engine.
+   */
+  public static boolean supports(String regex) {
+    try {
+      INSTANCE.compile(regex);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public CompiledRegex compile(String regex) {
+    // syntax errors are reported as by java.util.regex
+    int groupCount = Pattern.compile(regex).matcher("").groupCount();
+    try {
+      Parser parser = new Parser(regex);
+      Node root = parser.parse();
+      if (parser.groupCount != groupCount) {
+        throw new IllegalArgumentException("unexpected group count");
+      }
+      Builder builder = new Builder();
+      builder.emit(Builder.SAVE, 0, 0);
+      root.compile(builder);
+      builder.emit(Builder.SAVE, 1, 0);
+      builder.emit(Builder.MATCH, 0, 0);
+      return builder.build(regex, groupCount);
+    } catch (IllegalArgumentException e) {
+      if (fallback != null) {
+        return fallback.compile(regex);
+      }
+      throw new IllegalArgumentException("Regex not supported by the linear engine (" + e.getMessage() + "): "
+          + regex, e);
+    }
+  }
+
+  private Object readResolve() {
+    return fallback == null ? INSTANCE : this;
+  }
+
+  /**
+   * Accumulates the instructions of a program.
+   */
+  private static final class Builder {
+    static final int CHAR = LinearProgram.CHAR;
+    static final int SET = LinearProgram.SET;
+    static final int SPLIT = LinearProgram.SPLIT;
+    static final int JUMP = LinearProgram.JUMP;
+    static final int SAVE = LinearProgram.SAVE;
+    static final int ASSERT = LinearProgram.ASSERT;
+    static final int MATCH = LinearProgram.MATCH;
+
+    private int[] codes = new int[64];
+    private int[] arguments = new int[64];
+    private int[] alternatives = new int[64];
+    private int size;
+    private final List<CharSet> sets = new ArrayList<>();
+    private final List<Assertion> assertions = new ArrayList<>();
+
+    int emit(int code, int argument, int alternative) {
+      if (size == MAX_INSTRUCTIONS) {
+        throw new IllegalArgumentException("too many instructions");
+      }
+      if (size == codes.length) {
+        codes = Arrays.copyOf(codes, size * 2);
+        arguments = Arrays.copyOf(arguments, size * 2);
+        alternatives = Arrays.copyOf(alternatives, size * 2);
+      }
+      codes[size] = code;
+      arguments[size] = argument;
+      alternatives[size] = alternative;
+      return size++;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void setArgument(int pc, int argument) {
+      arguments[pc] = argument;
+    }
+
+    void setAlternative(int pc, int alternative) {
+      alternatives[pc] = alternative;
+    }
+
+    int set(CharSet set) {
+      sets.add(set);
+      return sets.size() - 1;
+    }
+
+    int assertion(Assertion assertion) {
+      assertions.add(assertion);
+      return assertions.size() - 1;
+    }
+
+    LinearProgram build(String regex, int groupCount) {
+      return new LinearProgram(regex, groupCount, Arrays.copyOf(codes, size), Arrays.copyOf(arguments, size),
+          Arrays.copyOf(alternatives, size), sets.toArray(new CharSet[0]), assertions.toArray(new Assertion[0]));
+    }
+  }
+
+  /**
+   * Regex syntax tree.
+   */
+  private abstract static class Node {
+    abstract void compile(Builder builder);
+
+    /**
+     * Whether the node can match without consuming a char.
+     */
+    abstract boolean matchesEmpty();
+  }
+
+  /**
+   * Matches one char.
+   */
+  private static final class CharNode extends Node {
+    final CharSet set;
+    /** The only char matched, -1 for a set. */
+    final int single;
+
+    CharNode(CharSet set, int single) {
+      this.set = set;
+      this.single = single;
+    }
+
+    @Override
+    void compile(Builder builder) {
+      if (single >= 0) {
+        builder.emit(Builder.CHAR, single, 0);
+      } else {
+        builder.emit(Builder.SET, builder.set(set), 0);
+      }
+    }
+
+    @Override
+    boolean matchesEmpty() {
+      return false;
+    }
+  }
+
+  private static final class Sequence extends Node {
+    final List<Node> nodes;
+
+    Sequence(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    void compile(Builder builder) {
+      for (Node node : nodes) {
+        node.compile(builder);
+      }
+    }
+
+    @Override
+    boolean matchesEmpty() {
+      return nodes.stream().allMatch(Node::matchesEmpty);
+    }
+  }
+
+  private static final class Alternation extends Node {
+    final List<Node> alternatives;
+
+    Alternation(List<Node> alternatives) {
+      this.alternatives = alternatives;
+    }
+
+    @Override
+    void compile(Builder builder) {
+      List<Integer> jumps = new ArrayList<>();
+      for (int i = 0; i < alternatives.size(); i++) {
+        if (i < alternatives.size() - 1) {
+          int split = builder.emit(Builder.SPLIT, 0, 0);
+          builder.setArgument(split, builder.size());
+          alternatives.get(i).compile(builder);
+          jumps.add(builder.emit(Builder.JUMP, 0, 0));
+          builder.setAlternative(split, builder.size());
+        } else {
+          alternatives.get(i).compile(builder);
+        }
+      }
+      for (int jump : jumps) {
+        builder.setArgument(jump, builder.size());
+      }
+    }
+
+    @Override
+    boolean matchesEmpty() {
+      return alternatives.stream().anyMatch(Node::matchesEmpty);
+    }
+  }
+
+  private static final class Group extends Node {
+    final Node body;
+    final int index;
+
+    Group(Node body, int index) {
+      this.body = body;
+      this.index = index;
+    }
+
+    @Override
+    void compile(Builder builder) {
+      builder.emit(Builder.SAVE, 2 * index, 0);
+      body.compile(builder);
+      builder.emit(Builder.SAVE, 2 * index + 1, 0);
+    }
+
+    @Override
+    boolean matchesEmpty() {
+      return body.matchesEmpty();
+    }
+  }
+
+  private static final class Repetition extends Node {
+    final Node body;
+    final int min;
+    /** -1 when unbounded. */
+    final int max;
+    final boolean greedy;
+
+    Repetition(Node body, int min, int max, boolean greedy) {
+      this.body = body;
+      this.min = min;
+      this.max = max;
+      this.greedy = greedy;
+    }
+
+    @Override
+    void compile(Builder builder) {
+      for (int i = 0; i < min; i++) {
+        body.compile(builder);
+      }
+      if (max < 0) {
+        int split = builder.emit(Builder.SPLIT, 0, 0);
+        body.compile(builder);
+        builder.emit(Builder.JUMP, split, 0);
+        branch(builder, split, split + 1, builder.size());
+        return;
+      }
+      List<Integer> splits = new ArrayList<>();
+      for (int i = min; i < max; i++) {
+        splits.add(builder.emit(Builder.SPLIT, 0, 0));
+        body.compile(builder);
+      }
+      for (int split : splits) {
+        branch(builder, split, split + 1, builder.size());
+      }
+    }
+
+    private void branch(Builder builder, int split, int repeat, int exit) {
+      builder.setArgument(split, greedy ? repeat : exit);
+      builder.setAlternative(split, greedy ? exit : repeat);
+    }
+
+    @Override
+    boolean matchesEmpty() {
+      return min == 0 || body.matchesEmpty();
+    }
+  }
+
+  private static final class AssertionNode extends Node {
+    final Assertion assertion;
+
+    AssertionNode(Assertion assertion) {
+      this.assertion = assertion;
+    }
+
+    @Override
+    void compile(Builder builder) {
+      builder.emit(Builder.ASSERT, builder.assertion(assertion), 0);
+    }
+
+    @Override
+    boolean matchesEmpty() {
+      return true;
+    }
+  }
+
+  /**
+   * Builds a {@link CharSet} from chars and ranges.
+   */
+  private static final class CharSetBuilder {
+    private long low;
+    private long high;
+    private final List<int[]> ranges = new ArrayList<>();
+
+    CharSetBuilder add(int from, int to) {
+      for (int value = from; value <= Math.min(to, 127); value++) {
+        if (value < 64) {
+          low |= 1L << value;
+        } else {
+          high |= 1L << (value - 64);
+        }
+      }
+      if (to >= 128) {
+        ranges.add(new int[] {Math.max(from, 128), to});
+      }
+      return this;
+    }
+
+    CharSetBuilder add(CharSet set) {
+      if (set.isNegated()) {
+        throw new IllegalArgumentException("negated class in a class");
+      }
+      low |= set.low();
+      high |= set.high();
+      int[] setRanges = set.ranges();
+      for (int i = 0; i < setRanges.length; i += 2) {
+        ranges.add(new int[] {setRanges[i], setRanges[i + 1]});
+      }
+      return this;
+    }
+
+    CharSet build(boolean negated) {
+      ranges.sort((left, right) -> Integer.compare(left[0], right[0]));
+      int[] merged = new int[ranges.size() * 2];
+      int size = 0;
+      for (int[] range : ranges) {
+        if (size > 0 && range[0] <= merged[size - 1] + 1) {
+          merged[size - 1] = Math.max(merged[size - 1], range[1]);
+        } else {
+          merged[size++] = range[0];
+          merged[size++] = range[1];
+        }
+      }
+      return new CharSet(low, high, Arrays.copyOf(merged, size), negated);
+    }
+  }
+
+  /**
+   * Recursive descent parser of the supported subset.
+   */
+  private static final class Parser {
+    private static final CharSet DIGIT = new CharSetBuilder().add('0', '9').build(false);
+    private static final CharSet WORD = new CharSetBuilder().add('a', 'z').add('A', 'Z').add('_', '_')
+        .add('0', '9').build(false);
+    private static final CharSet SPACE = new CharSetBuilder().add(' ', ' ').add('\t', '\r').build(false);
+    private static final CharSet DOT = new CharSetBuilder().add('\n', '\n').add('\r', '\r')
+        .add('\u0085', '\u0085').add('\u2028', '\u2029').build(true);
+
+    private final String regex;
+    private int position;
+    int groupCount;
+
+    Parser(String regex) {
+      this.regex = regex;
+    }
+
+    Node parse() {
+      Node node = alternation();
+      if (position < regex.length()) {
+        throw new IllegalArgumentException("unexpected '" + regex.charAt(position) + "'");
+      }
+      return node;
+    }
+
+    private boolean more() {
+      return position < regex.length();
+    }
+
+    private char peek() {
+      return regex.charAt(position);
+    }
+
+    private boolean lookingAt(String prefix) {
+      return regex.startsWith(prefix, position);
+    }
+
+    private Node alternation() {
+      List<Node> alternatives = new ArrayList<>();
+      alternatives.add(sequence());
+      while (more() && peek() == '|') {
+        position++;
+        alternatives.add(sequence());
+      }
+      return alternatives.size() == 1 ? alternatives.get(0) : new Alternation(alternatives);
+    }
+
+    private Node sequence() {
+      List<Node> nodes = new ArrayList<>();
+      while (more() && peek() != '|' && peek() != ')') {
+        if (lookingAt("\\Q")) {
+          int quoteEnd = regex.indexOf("\\E", position + 2);
+          int literalEnd = quoteEnd < 0 ? regex.length() : quoteEnd;
+          for (int i = position + 2; i < literalEnd; i++) {
+            nodes.add(literal(regex.charAt(i)));
+          }
+          position = quoteEnd < 0 ? regex.length() : quoteEnd + 2;
+          continue;
+        }
+        nodes.add(quantified(atom()));
+      }
+      return nodes.size() == 1 ? nodes.get(0) : new Sequence(nodes);
+    }
+
+    private Node quantified(Node atom) {
+      Node node = atom;
+      while (more()) {
+        int min;
+        int max;
+        char current = peek();
+        if (current == '*') {
+          min = 0;
+          max = -1;
+          position++;
+        } else if (current == '+') {
+          min = 1;
+          max = -1;
+          position++;
+        } else if (current == '?') {
+          min = 0;
+          max = 1;
+          position++;
+        } else if (current == '{') {
+          int close = regex.indexOf('}', position);
+          String[] bounds = regex.substring(position + 1, close).split(",", -1);
+          min = Integer.parseInt(bounds[0].trim());
+          max = bounds.length == 1 ? min : bounds[1].trim().isEmpty() ? -1 : Integer.parseInt(bounds[1].trim());
+          position = close + 1;
+        } else {
+          return node;
+        }
+        boolean greedy = true;
+        if (more() && peek() == '?') {
+          greedy = false;
+          position++;
+        } else if (more() && peek() == '+') {
+          throw new IllegalArgumentException("possessive quantifier");
+        }
+        if (current != '?' && node.matchesEmpty()) {
+          // java.util.regex ends a loop on an empty iteration, with its own rules for the groups
+          throw new IllegalArgumentException("repetition of a pattern matching the empty string");
+        }
+        node = new Repetition(node, min, max, greedy);
+      }
+      return node;
+    }
+
+    private Node atom() {
+      char current = regex.charAt(position++);
+      switch (current) {
+        case '(':
+          return group();
+        case '[':
+          position--;
+          return new CharNode(charClass(), -1);
+        case '.':
+          return new CharNode(DOT, -1);
+        case '^':
+          return new AssertionNode(new Assertion(Assertion.BEGIN, null, false));
+        case '$':
+          return new AssertionNode(new Assertion(Assertion.END_OF_LINE, null, false));
+        case '\\':
+          return escape();
+        default:
+          return literal(current);
+      }
+    }
+
+    private Node group() {
+      if (!more() || peek() != '?') {
+        int index = ++groupCount;
+        return closeGroup(new Group(alternation(), index));
+      }
+      if (lookingAt("?:")) {
+        position += 2;
+        return closeGroup(alternation());
+      }
+      if (lookingAt("?<") && position + 2 < regex.length() && Character.isLetter(regex.charAt(position + 2))) {
+        position = regex.indexOf('>', position) + 1;
+        int index = ++groupCount;
+        return closeGroup(new Group(alternation(), index));
+      }
+      if (lookingAt("?>")) {
+        position += 2;
+        Node body = closeGroup(alternation());
+        // an atomic group of a fixed sequence of chars can't backtrack anyway
+        fixedSequence(body, "atomic group");
+        return body;
+      }
+      int kind;
+      boolean negated;
+      if (lookingAt("?=") || lookingAt("?!")) {
+        kind = Assertion.AHEAD;
+        negated = regex.charAt(position + 1) == '!';
+        position += 2;
+      } else if (lookingAt("?<=") || lookingAt("?<!")) {
+        kind = Assertion.BEHIND;
+        negated = regex.charAt(position + 2) == '!';
+        position += 3;
+      } else {
+        throw new IllegalArgumentException("flags or special group");
+      }
+      Node body = closeGroup(alternation());
+      return new AssertionNode(new Assertion(kind, fixedSequence(body, "lookaround"), negated));
+    }
+
+    private Node closeGroup(Node body) {
+      if (!more() || peek() != ')') {
+        throw new IllegalArgumentException("unclosed group");
+      }
+      position++;
+      return body;
+    }
+
+    private CharSet[] fixedSequence(Node body, String construct) {
+      List<Node> nodes = body instanceof Sequence ? ((Sequence) body).nodes : Arrays.asList(body);
+      CharSet[] sequence = new CharSet[nodes.size()];
+      for (int i = 0; i < sequence.length; i++) {
+        if (!(nodes.get(i) instanceof CharNode)) {
+          throw new IllegalArgumentException(construct + " which is not a fixed sequence of chars");
+        }
+        sequence[i] = ((CharNode) nodes.get(i)).set;
+      }
+      if (sequence.length == 0) {
+        throw new IllegalArgumentException("empty " + construct);
+      }
+      return sequence;
+    }
+
+    private Node escape() {
+      char current = regex.charAt(position);
+      switch (current) {
+        case 'b':
+          position++;
+          return new AssertionNode(new Assertion(Assertion.WORD_BOUNDARY, null, false));
+        case 'B':
+          position++;
+          return new AssertionNode(new Assertion(Assertion.NOT_WORD_BOUNDARY, null, false));
+        case 'A':
+          position++;
+          return new AssertionNode(new Assertion(Assertion.BEGIN, null, false));
+        case 'z':
+          position++;
+          return new AssertionNode(new Assertion(Assertion.END, null, false));
+        case 'Z':
+          position++;
+          return new AssertionNode(new Assertion(Assertion.END_OF_LINE, null, false));
+        default:
+          CharSet predefined = predefined(current);
+          if (predefined != null) {
+            position++;
+            return new CharNode(predefined, -1);
+          }
+          return literal(escapedChar());
+      }
+    }
+
+    private CharSet predefined(char current) {
+      switch (current) {
+        case 'd':
+          return DIGIT;
+        case 'D':
+          return DIGIT.negate();
+        case 'w':
+          return WORD;
+        case 'W':
+          return WORD.negate();
+        case 's':
+          return SPACE;
+        case 'S':
+          return SPACE.negate();
+        default:
+          return null;
+      }
+    }
+
+    /**
+     * Reads the char of an escape sequence, after the backslash.
+     */
+    private char escapedChar() {
+      char current = regex.charAt(position++);
+      switch (current) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'f':
+          return '\f';
+        case 'a':
+          return (char) 7;
+        case 'e':
+          return '\u001B';
+        case 'c':
+          return (char) (regex.charAt(position++) ^ 64);
+        case 'x':
+          if (peek() == '{') {
+            int close = regex.indexOf('}', position);
+            int value = Integer.parseInt(regex.substring(position + 1, close), 16);
+            position = close + 1;
+            if (value > Character.MAX_VALUE) {
+              throw new IllegalArgumentException("supplementary code point");
+            }
+            return (char) value;
+          }
+          position += 2;
+          return (char) Integer.parseInt(regex.substring(position - 2, position), 16);
+        case 'u':
+          position += 4;
+          return (char) Integer.parseInt(regex.substring(position - 4, position), 16);
+        case '0':
+          int value = 0;
+          for (int digits = 0; digits < 3 && more() && peek() >= '0' && peek() <= '7'
+              && value * 8 + (peek() - '0') <= 0377; digits++) {
+            value = value * 8 + (regex.charAt(position++) - '0');
+          }
+          return (char) value;
+        default:
+          if (Character.isLetterOrDigit(current)) {
+            throw new IllegalArgumentException("escape \\" + current);
+          }
+          return current;
+      }
+    }
+
+    private Node literal(char value) {
+      return new CharNode(new CharSetBuilder().add(value, value).build(false), value);
+    }
+
+    /**
+     * Parses a char class, from its '[' to its ']'. The ASCII and Latin-1 chars of the class are checked
+     * against {@code java.util.regex}, which has many special cases.
+     */
+    private CharSet charClass() {
+      int from = position;
+      CharSet set = classBody();
+      Pattern reference = Pattern.compile(regex.substring(from, position));
+      for (char value = 0; value < 256; value++) {
+        if (reference.matcher(String.valueOf(value)).matches() != set.contains(value)) {
+          throw new IllegalArgumentException("char class " + regex.substring(from, position));
+        }
+      }
+      return set;
+    }
+
+    private CharSet classBody() {
+      position++;
+      boolean negated = more() && peek() == '^';
+      if (negated) {
+        position++;
+      }
+      CharSetBuilder builder = new CharSetBuilder();
+      boolean first = true;
+      while (true) {
+        if (!more()) {
+          throw new IllegalArgumentException("unclosed class");
+        }
+        char current = peek();
+        if (current == ']' && !first) {
+          position++;
+          return builder.build(negated);
+        }
+        first = false;
+        if (current == '[') {
+          if (negated) {
+            throw new IllegalArgumentException("class in a negated class");
+          }
+          builder.add(classBody());
+          continue;
+        }
+        if (lookingAt("&&")) {
+          throw new IllegalArgumentException("class intersection");
+        }
+        int low;
+        if (current == '\\') {
+          position++;
+          if (peek() == 'Q') {
+            int quoteEnd = regex.indexOf("\\E", position);
+            for (int i = position + 1; i < quoteEnd; i++) {
+              builder.add(regex.charAt(i), regex.charAt(i));
+            }
+            position = quoteEnd + 2;
+            continue;
+          }
+          CharSet predefined = predefined(peek());
+          if (predefined != null) {
+            position++;
+            builder.add(predefined.isNegated() ? predefined.complement() : predefined);
+            continue;
+          }
+          low = escapedChar();
+        } else {
+          low = current;
+          position++;
+        }
+        int high = low;
+        if (lookingAt("-") && position + 1 < regex.length() && regex.charAt(position + 1) != ']') {
+          position++;
+          if (peek() == '[') {
+            throw new IllegalArgumentException("range to a class");
+          }
+          if (peek() == '\\') {
+            position++;
+            if (predefined(peek()) != null) {
+              throw new IllegalArgumentException("range to a predefined class");
+            }
+            high = escapedChar();
+          } else {
+            high = regex.charAt(position++);
+          }
+        }
+        builder.add(low, high);
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * {@code LiteralIndex} finds, in a single pass over a line, the patterns of a list whose
+ * {@link RequiredLiterals required literals} are all present: the only ones which may match.
+ * <br>
+ * The literals of every pattern are searched at once with an Aho-Corasick automaton. Transitions on
+ * ASCII chars are a table lookup, other chars follow the failure links.
+ *
+ * @since 0.1.10
+ */
+final class LiteralIndex implements Serializable {
+
+  private static final int ASCII = 128;
+
+  /** Literal ids required by each pattern, empty when a pattern requires none. */
+  private final int[][] required;
+  private final int literalCount;
+  /** Transitions of every state on ASCII chars, state * ASCII + char. */
+  private final int[] asciiTransitions;
+  /** Transitions on other chars: sorted chars and their targets, per state. */
+  private final char[][] otherChars;
+  private final int[][] otherTargets;
+  private final int[] failures;
+  /** Literal ids ending at each state, suffixes included. */
+  private final int[][] outputs;
+
+  /**
+   * Build the index of the given patterns.
+   *
+   * @param literalsByPattern : required literals of each pattern
+   */
+  LiteralIndex(List<List<String>> literalsByPattern) {
+    Map<String, Integer> literalIds = new HashMap<>();
+    required = new int[literalsByPattern.size()][];
+    for (int pattern = 0; pattern < required.length; pattern++) {
+      List<String> literals = literalsByPattern.get(pattern);
+      required[pattern] = new int[literals.size()];
+      for (int i = 0; i < literals.size(); i++) {
+        required[pattern][i] = literalIds.computeIfAbsent(literals.get(i), literal -> literalIds.size());
+      }
+    }
+    literalCount = literalIds.size();
+
+    // trie
+    List<Map<Character, Integer>> trie = new ArrayList<>();
+    List<List<Integer>> ends = new ArrayList<>();
+    trie.add(new HashMap<>());
+    ends.add(new ArrayList<>());
+    for (Map.Entry<String, Integer> literal : literalIds.entrySet()) {
+      int state = 0;
+      for (char value : literal.getKey().toCharArray()) {
+        Integer next = trie.get(state).get(value);
+        if (next == null) {
+          next = trie.size();
+          trie.get(state).put(value, next);
+          trie.add(new HashMap<>());
+          ends.add(new ArrayList<>());
+        }
+        state = next;
+      }
+      ends.get(state).add(literal.getValue());
+    }
+
+    // failure links and outputs, breadth first
+    int stateCount = trie.size();
+    failures = new int[stateCount];
+    outputs = new int[stateCount][];
+    asciiTransitions = new int[stateCount * ASCII];
+    otherChars = new char[stateCount][];
+    otherTargets = new int[stateCount][];
+    outputs[0] = new int[0];
+    Queue<Integer> queue = new ArrayDeque<>();
+    queue.add(0);
+    while (!queue.isEmpty()) {
+      int state = queue.remove();
+      Map<Character, Integer> children = trie.get(state);
+      List<Character> others = new ArrayList<>();
+      for (Map.Entry<Character, Integer> child : children.entrySet()) {
+        char value = child.getKey();
+        int target = child.getValue();
+        failures[target] = state == 0 ? 0 : next(failures[state], value);
+        int[] ownOutputs = ends.get(target).stream().mapToInt(Integer::intValue).toArray();
+        int[] inherited = outputs[failures[target]];
+        outputs[target] = Arrays.copyOf(ownOutputs, ownOutputs.length + inherited.length);
+        System.arraycopy(inherited, 0, outputs[target], ownOutputs.length, inherited.length);
+        if (value >= ASCII) {
+          others.add(value);
+        }
+        queue.add(target);
+      }
+      for (int value = 0; value < ASCII; value++) {
+        Integer child = children.get((char) value);
+        asciiTransitions[state * ASCII + value] = child != null ? child
+            : state == 0 ? 0 : asciiTransitions[failures[state] * ASCII + value];
+      }
+      others.sort(null);
+      otherChars[state] = new char[others.size()];
+      otherTargets[state] = new int[others.size()];
+      for (int i = 0; i < others.size(); i++) {
+        otherChars[state][i] = others.get(i);
+        otherTargets[state][i] = children.get(others.get(i));
+      }
+    }
+  }
+
+  /**
+   * Transition from a state whose transitions, and those of its failure states, are all built.
+   */
+  private int next(int state, char value) {
+    if (value < ASCII) {
+      return asciiTransitions[state * ASCII + value];
+    }
+    while (true) {
+      int index = Arrays.binarySearch(otherChars[state], value);
+      if (index >= 0) {
+        return otherTargets[state][index];
+      }
+      if (state == 0) {
+        return 0;
+      }
+      state = failures[state];
+    }
+  }
+
+  /**
+   * Whether no pattern requires any literal, the index then selects every pattern.
+   */
+  boolean isEmpty() {
+    return literalCount == 0;
+  }
+
+  /**
+   * Finds the literals present in the <tt>[start, end)</tt> range of the text.
+   *
+   * @return bit set of the literal ids found
+   */
+  long[] find(CharSequence text, int start, int end) {
+    long[] found = new long[(literalCount + 63) >>> 6];
+    int state = 0;
+    for (int position = start; position < end; position++) {
+      state = next(state, text.charAt(position));
+      for (int literal : outputs[state]) {
+        found[literal >>> 6] |= 1L << literal;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Whether every literal required by the given pattern was found.
+   */
+  boolean isCandidate(int pattern, long[] found) {
+    for (int literal : required[pattern]) {
+      if ((found[literal >>> 6] & (1L << literal)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
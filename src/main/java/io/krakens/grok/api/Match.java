@@ -4,6 +4,7 @@ package io.krakens.grok.api;
 import static java.lang.String.format;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -19,13 +20,54 @@ import io.krakens.grok.api.exception.GrokException;
  * @since 0.0.1
  */
 public class Match {
+
+  /**
+   * Outcome of the last primitive read of a {@code Match}, such as {@link Match#getInt(String)}.
+   *
+   * @since 0.1.10
+   */
+  public enum ParseStatus {
+    /**
+     * The field was captured and parsed.
+     */
+    PARSED,
+    /**
+     * The field was not captured, or the pattern has no such field.
+     */
+    MISSING,
+    /**
+     * The field is not a number, or not a boolean.
+     */
+    INVALID,
+    /**
+     * The field is a number out of the range of the type.
+     */
+    OVERFLOW
+  }
+
   private final CharSequence subject;
   private final Grok grok;
-  private final Matcher match;
+  private Matcher match;
+  /**
+   * Start and end offsets of the named groups, in the order of {@link Grok#namedGroups},
+   * when this match doesn't hold a {@code Matcher}.
+   */
+  private final int[] groups;
   private final int start;
   private final int end;
+  /** Range of the subject the regex was applied to. */
+  private final int regionStart;
+  private final int regionEnd;
   private boolean keepEmptyCaptures = true;
   private Map<String, Object> capture = Collections.emptyMap();
+  private ParseStatus parseStatus = ParseStatus.MISSING;
+  /** Offsets of the field found by the last primitive read. */
+  private int fieldStart;
+  private int fieldEnd;
+  /**
+   * Converter of the group found by {@link #findField(String)}.
+   */
+  private IConverter<?> fieldConverter;
 
   /**
    * Create a new {@code Match} object.
@@ -34,8 +76,38 @@ public class Match {
     this.subject = subject;
     this.grok = grok;
     this.match = match;
+    this.groups = null;
     this.start = start;
     this.end = end;
+    this.regionStart = match == null ? 0 : match.regionStart();
+    this.regionEnd = match == null ? subject.length() : match.regionEnd();
+  }
+
+  /**
+   * Create a new {@code Match} from the current state of a borrowed {@code Matcher},
+   * which is not kept.
+   */
+  Match(CharSequence subject, Grok grok, int regionStart, int regionEnd, RegexMatcher matcher) {
+    this(subject, grok, regionStart, regionEnd, matcher, 0);
+  }
+
+  /**
+   * Create a new {@code Match} from the groups of a borrowed {@code Matcher}, numbered from
+   * {@code firstGroup} instead of 0: the named regex of the {@code Grok} is a part of a larger regex.
+   */
+  Match(CharSequence subject, Grok grok, int regionStart, int regionEnd, RegexMatcher matcher, int firstGroup) {
+    this.subject = subject;
+    this.grok = grok;
+    this.start = matcher.start(firstGroup);
+    this.end = matcher.end(firstGroup);
+    this.regionStart = regionStart;
+    this.regionEnd = regionEnd;
+    int[] indexes = grok.namedGroupIndexes;
+    this.groups = new int[indexes.length * 2];
+    for (int i = 0; i < indexes.length; i++) {
+      groups[2 * i] = matcher.start(firstGroup + indexes[i]);
+      groups[2 * i + 1] = matcher.end(firstGroup + indexes[i]);
+    }
   }
 
   /**
@@ -43,10 +115,39 @@ public class Match {
    */
   public static final Match EMPTY = new Match("", null, null, 0, 0);
 
+  /**
+   * Match given up because it exceeded the {@link MatchBudget} of its {@code Grok}, it captures nothing.
+   */
+  public static final Match ABORTED = new Match("", null, null, 0, 0);
+
+  /**
+   * Get the {@code Matcher} of this match. When the match was made with a pooled {@code Matcher},
+   * an equivalent one is rebuilt the first time, by applying the regex again on the same subject
+   * with the {@link RegexEngine} of the {@code Grok}. With another engine than java.util.regex, the
+   * {@code Matcher} is then set on the found groups only: it holds the same groups, within a region
+   * starting at the match.
+   */
   public Matcher getMatch() {
+    if (match == null && groups != null) {
+      match = grok.rematch(subject, regionStart, regionEnd);
+    }
     return match;
   }
 
+  /**
+   * Start of the range of the subject the regex was applied to.
+   */
+  public int getRegionStart() {
+    return regionStart;
+  }
+
+  /**
+   * End of the range of the subject the regex was applied to.
+   */
+  public int getRegionEnd() {
+    return regionEnd;
+  }
+
   public int getStart() {
     return start;
   }
@@ -71,7 +172,7 @@ public class Match {
   }
 
   /**
-   * Retrurn the single line of log.
+   * Retrurn the single line of log, or the whole buffer when a range of it was matched.
    *
    * @return the single line of log
    */
@@ -107,6 +208,181 @@ public class Match {
     return capture(true);
   }
 
+  /**
+   * Read only view of the captures, which extracts and converts a value only when its key is read.
+   * Reading a few keys of a large match is cheaper than {@link #capture()}; iterating the view holds
+   * the same entries, in the same order.
+   * <br>
+   * The view keeps the offsets of the groups and not the {@code Matcher}. Like the {@code Match},
+   * it is not thread safe.
+   *
+   * @return the captures, decoded on access
+   */
+  public Map<String, Object> lazyCapture() {
+    if (isNull()) {
+      return Collections.emptyMap();
+    }
+    if (!capture.isEmpty()) {
+      return capture;
+    }
+    return new CaptureView(subject, grok, groups != null ? groups : groupOffsets(), keepEmptyCaptures);
+  }
+
+  /**
+   * Start and end offsets of the named groups of the {@code Matcher}, in the order of {@link Grok#namedGroups}.
+   */
+  private int[] groupOffsets() {
+    int[] offsets = new int[grok.namedGroups.size() * 2];
+    Arrays.fill(offsets, -1);
+    for (CaptureField field : grok.capturePlan) {
+      offsets[2 * field.position] = field.group < 0 ? match.start(field.groupName) : match.start(field.group);
+      offsets[2 * field.position + 1] = field.group < 0 ? match.end(field.groupName) : match.end(field.group);
+    }
+    return offsets;
+  }
+
+  /**
+   * Whether a group of the given field took part in the match.
+   *
+   * @param field : field name, without type
+   */
+  public boolean has(String field) {
+    return findField(field);
+  }
+
+  /**
+   * Get a field as an int, parsed from the subject without creating a string. Failures are reported by
+   * {@link #getParseStatus()} instead of exceptions.
+   *
+   * @param field : field name, without type
+   * @return value of the field, 0 when {@link #getParseStatus()} is not {@link ParseStatus#PARSED}
+   */
+  public int getInt(String field) {
+    return (int) parseLong(field, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Get a field as a long, parsed from the subject without creating a string. Failures are reported by
+   * {@link #getParseStatus()} instead of exceptions. The field of a {@link Converter.ILongConverter} is read
+   * as its value instead of a decimal integer.
+   *
+   * @param field : field name, without type
+   * @return value of the field, 0 when {@link #getParseStatus()} is not {@link ParseStatus#PARSED}
+   */
+  public long getLong(String field) {
+    return parseLong(field, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  private long parseLong(String field, long min, long max) {
+    if (!findField(field)) {
+      parseStatus = ParseStatus.MISSING;
+      return 0;
+    }
+    parseStatus = Numbers.checkLong(fieldConverter, subject, fieldStart, fieldEnd, min, max);
+    return parseStatus == ParseStatus.PARSED ? Numbers.parseLong(fieldConverter, subject, fieldStart, fieldEnd) : 0;
+  }
+
+  /**
+   * Get a field as a double, parsed from the subject without creating a string unless it has more than
+   * 15 significant digits. Failures are reported by {@link #getParseStatus()} instead of exceptions.
+   *
+   * @param field : field name, without type
+   * @return value of the field, 0 when {@link #getParseStatus()} is not {@link ParseStatus#PARSED}
+   */
+  public double getDouble(String field) {
+    if (!findField(field)) {
+      parseStatus = ParseStatus.MISSING;
+      return 0;
+    }
+    parseStatus = Numbers.checkDouble(subject, fieldStart, fieldEnd);
+    return parseStatus == ParseStatus.PARSED ? Numbers.parseDouble(subject, fieldStart, fieldEnd) : 0;
+  }
+
+  /**
+   * Get a field as a boolean, {@code true} or {@code false} ignoring case. Failures are reported by
+   * {@link #getParseStatus()} instead of exceptions.
+   *
+   * @param field : field name, without type
+   * @return value of the field, false when {@link #getParseStatus()} is not {@link ParseStatus#PARSED}
+   */
+  public boolean getBoolean(String field) {
+    if (!findField(field)) {
+      parseStatus = ParseStatus.MISSING;
+      return false;
+    }
+    parseStatus = Numbers.checkBoolean(subject, fieldStart, fieldEnd);
+    return parseStatus == ParseStatus.PARSED && Numbers.parseBoolean(subject, fieldStart, fieldEnd);
+  }
+
+  /**
+   * Outcome of the last call to {@link #getInt(String)}, {@link #getLong(String)},
+   * {@link #getDouble(String)} or {@link #getBoolean(String)}.
+   */
+  public ParseStatus getParseStatus() {
+    return parseStatus;
+  }
+
+  /**
+   * Find the first group of the field which took part in the match, and keep its offsets.
+   */
+  private boolean findField(String field) {
+    if (isNull()) {
+      return false;
+    }
+    int[] fields = grok.captureKeys.get(field);
+    if (fields == null) {
+      return false;
+    }
+    for (int step : fields) {
+      if (locate(grok.capturePlan[step])) {
+        fieldConverter = grok.capturePlan[step].converter;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Keep the offsets of the group of the given field, and tell whether it took part in the match.
+   */
+  private boolean locate(CaptureField field) {
+    if (groups != null) {
+      fieldStart = groups[2 * field.position];
+      fieldEnd = groups[2 * field.position + 1];
+    } else if (field.group < 0) {
+      fieldStart = match.start(field.groupName);
+      fieldEnd = match.end(field.groupName);
+    } else {
+      fieldStart = match.start(field.group);
+      fieldEnd = match.end(field.group);
+    }
+    return fieldStart >= 0;
+  }
+
+  /**
+   * Get a field as a slice of the subject, unquoted as by {@link #capture()}: no char is copied.
+   *
+   * @param field : field name, without type
+   * @return the first group of the field which took part in the match, null when none did
+   */
+  public CharSlice getSlice(String field) {
+    return findField(field) ? CharSlice.unquoted(subject, fieldStart, fieldEnd) : null;
+  }
+
+  /**
+   * Same as {@link #capture()}, except that the fields without type are {@link CharSlice} of the subject
+   * instead of strings, which copies no char. The slices refer to the subject, which must not change while
+   * they are in use. The map is not kept by the match.
+   *
+   * @return the matched elements
+   */
+  public Map<String, Object> captureSlices() {
+    if (isNull()) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(decode(false, true));
+  }
+
   /**
    * Private implementation of captureFlattened and capture.
    * @param flattened will it flatten values.
@@ -114,7 +390,7 @@ public class Match {
    * @throws GrokException if a keys has multiple non-null values, but only if flattened is set to true.
    */
   private Map<String, Object> capture(boolean flattened ) throws GrokException {
-    if (match == null) {
+    if (isNull()) {
       return Collections.emptyMap();
     }
 
@@ -122,80 +398,80 @@ public class Match {
       return capture;
     }
 
-    capture = new LinkedHashMap<>();
-
-    // _capture.put("LINE", this.line);
-    // _capture.put("LENGTH", this.line.length() +"");
+    capture = Collections.unmodifiableMap(decode(flattened, false));
 
-    Map<String, String> mappedw = GrokUtils.namedGroups(this.match, this.grok.namedGroups);
-
-    mappedw.forEach((key, valueString) -> {
-      String id = this.grok.getNamedRegexCollectionById(key);
-      if (id != null && !id.isEmpty()) {
-        key = id;
-      }
-
-      if ("UNWANTED".equals(key)) {
-        return;
-      }
-
-      Object value = valueString;
-      if (valueString != null) {
-        IConverter<?> converter = grok.converters.get(key);
+    return capture;
+  }
 
-        if (converter != null) {
-          key = Converter.extractKey(key);
-          try {
-            value = converter.convert(valueString);
-          } catch (Exception e) {
-            capture.put(key + "_grokfailure", e.toString());
-          }
+  private Map<String, Object> decode(boolean flattened, boolean slices) {
+    CaptureField[] plan = grok.capturePlan;
+    ValueDictionary[] dictionaries = slices ? null : grok.dictionaries();
+    Map<String, Object> captured = new LinkedHashMap<>(plan.length * 4 / 3 + 1);
+
+    for (int step = 0; step < plan.length; step++) {
+      CaptureField field = plan[step];
+      boolean present = locate(field);
+      ValueDictionary dictionary = dictionaries == null || field.type != Converter.Type.STRING
+          ? null : dictionaries[grok.getSchema().fieldOf(step)];
+      Object value = null;
+      if (present && dictionary != null) {
+        value = dictionary.intern(subject, CharSlice.unquotedStart(subject, fieldStart, fieldEnd),
+            CharSlice.unquotedEnd(subject, fieldStart, fieldEnd));
+      } else if (present && field.converter != null) {
+        value = field.converter.convert(subject, fieldStart, fieldEnd);
+        if (value instanceof Converter.Failure) {
+          captured.put(field.failureKey, value.toString());
+          value = subject.subSequence(fieldStart, fieldEnd).toString();
+        }
 
-          if (value instanceof String) {
-            value = cleanString((String) value);
-          }
-        } else {
-          value = cleanString(valueString);
+        if (value instanceof String) {
+          value = cleanString((String) value);
         }
+      } else if (present && slices) {
+        value = CharSlice.unquoted(subject, fieldStart, fieldEnd);
+      } else if (present) {
+        value = cleanString(subject.subSequence(fieldStart, fieldEnd).toString());
       } else if (!isKeepEmptyCaptures()) {
-        return;
+        continue;
       }
 
-      if (capture.containsKey(key)) {
-        Object currentValue = capture.get(key);
-
-        if (flattened) {
-          if (currentValue == null && value != null) {
-            capture.put(key, value);
-          }
-          if (currentValue != null && value != null) {
-            throw new GrokException(
-                format(
-                    "key '%s' has multiple non-null values, this is not allowed in flattened mode, values:'%s', '%s'",
-                    key,
-                    currentValue,
-                    value));
-          }
-        } else {
-          if (currentValue instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<Object> cvl = (List<Object>) currentValue;
-            cvl.add(value);
-          } else {
-            List<Object> list = new ArrayList<Object>();
-            list.add(currentValue);
-            list.add(value);
-            capture.put(key, list);
-          }
-        }
+      String key = present ? field.key : field.emptyKey;
+      if (field.merge && captured.containsKey(key)) {
+        merge(captured, key, value, flattened);
       } else {
-        capture.put(key, value);
+        captured.put(key, value);
       }
-    });
+    }
+    return captured;
+  }
 
-    capture = Collections.unmodifiableMap(capture);
+  static void merge(Map<String, Object> captured, String key, Object value, boolean flattened) {
+    Object currentValue = captured.get(key);
 
-    return capture;
+    if (flattened) {
+      if (currentValue == null && value != null) {
+        captured.put(key, value);
+      }
+      if (currentValue != null && value != null) {
+        throw new GrokException(
+            format(
+                "key '%s' has multiple non-null values, this is not allowed in flattened mode, values:'%s', '%s'",
+                key,
+                currentValue,
+                value));
+      }
+    } else {
+      if (currentValue instanceof List) {
+        @SuppressWarnings("unchecked")
+        List<Object> cvl = (List<Object>) currentValue;
+        cvl.add(value);
+      } else {
+        List<Object> list = new ArrayList<Object>();
+        list.add(currentValue);
+        list.add(value);
+        captured.put(key, list);
+      }
+    }
   }
 
   /**
@@ -204,7 +480,7 @@ public class Match {
    * @param value string to pure: "my/text"
    * @return unquoted string: my/text
    */
-  private String cleanString(String value) {
+  static String cleanString(String value) {
     if (value == null || value.isEmpty()) {
       return value;
     }
@@ -239,7 +515,14 @@ public class Match {
    * @return boolean
    */
   public Boolean isNull() {
-    return this.match == null;
+    return this.match == null && this.groups == null;
+  }
+
+  /**
+   * Whether the match was given up because it exceeded the {@link MatchBudget} of its {@code Grok}.
+   */
+  public boolean isAborted() {
+    return this == ABORTED;
   }
 
 }
@@ -0,0 +1,89 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+import java.time.Duration;
+
+/**
+ * {@code MatchBudget} bounds the work of a single {@link Grok#match(CharSequence)}: the number of chars
+ * the regex engine may read from the line, and the time it may spend on it.
+ * <br>
+ * A backtracking regex may read the same chars again and again; the number of reads, not the length
+ * of the line, measures its work. The clock is only checked every thousand reads or so, the deadline
+ * is not exact. When the budget is exceeded, {@code match} gives up and returns {@link Match#ABORTED}.
+ *
+ * @since 0.1.10
+ */
+public final class MatchBudget implements Serializable {
+
+  private final long maximumCharReads;
+  private final long timeoutNanos;
+
+  private MatchBudget(long maximumCharReads, long timeoutNanos) {
+    if (maximumCharReads <= 0 || timeoutNanos <= 0) {
+      throw new IllegalArgumentException("Budget should be positive");
+    }
+    this.maximumCharReads = maximumCharReads;
+    this.timeoutNanos = timeoutNanos;
+  }
+
+  /**
+   * Budget of char reads per match, without deadline.
+   *
+   * @param maximumCharReads : maximum number of chars read from the line by the regex engine
+   * @return budget
+   * @throws IllegalArgumentException when the maximum is not positive
+   */
+  public static MatchBudget ofCharReads(long maximumCharReads) {
+    return new MatchBudget(maximumCharReads, Long.MAX_VALUE);
+  }
+
+  /**
+   * Budget of time per match, without bound on the char reads.
+   *
+   * @param timeout : maximum time spent matching a line
+   * @return budget
+   * @throws IllegalArgumentException when the timeout is not positive
+   */
+  public static MatchBudget ofTimeout(Duration timeout) {
+    return new MatchBudget(Long.MAX_VALUE, toNanos(timeout));
+  }
+
+  /**
+   * Budget of both char reads and time per match, whichever is exceeded first.
+   */
+  public static MatchBudget of(long maximumCharReads, Duration timeout) {
+    return new MatchBudget(maximumCharReads, toNanos(timeout));
+  }
+
+  private static long toNanos(Duration timeout) {
+    try {
+      return timeout.toNanos();
+    } catch (ArithmeticException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  public long getMaximumCharReads() {
+    return maximumCharReads;
+  }
+
+  /**
+   * Get the timeout, {@code null} when the time is not bounded.
+   */
+  public Duration getTimeout() {
+    return isTimed() ? Duration.ofNanos(timeoutNanos) : null;
+  }
+
+  boolean isTimed() {
+    return timeoutNanos != Long.MAX_VALUE;
+  }
+
+  long getTimeoutNanos() {
+    return timeoutNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "MatchBudget{maximumCharReads=" + maximumCharReads + ", timeout=" + getTimeout() + '}';
+  }
+}
@@ -0,0 +1,61 @@
+package io.krakens.grok.api;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@code MatcherPool} is a small lock free pool of {@link RegexMatcher} for one {@link CompiledRegex}.
+ * <br>
+ * A {@code Matcher} is borrowed with {@link #acquire()} for the duration of a single match,
+ * and handed back with {@link #release(RegexMatcher)} once its groups have been read. It must not be used
+ * after being released. The pool is not tied to threads, so it works the same with platform and
+ * virtual threads; when every slot is taken a new {@code Matcher} is created and dropped on release.
+ *
+ * @since 0.1.10
+ */
+final class MatcherPool {
+
+  private static final int SIZE = Math.min(64, Integer.highestOneBit(
+      Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+
+  private final CompiledRegex regex;
+  private final AtomicReferenceArray<RegexMatcher> matchers = new AtomicReferenceArray<>(SIZE);
+
+  MatcherPool(CompiledRegex regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * Borrows a {@code Matcher}.
+   */
+  RegexMatcher acquire() {
+    int first = slot();
+    for (int i = 0; i < SIZE; i++) {
+      int index = (first + i) & (SIZE - 1);
+      if (matchers.get(index) != null) {
+        RegexMatcher matcher = matchers.getAndSet(index, null);
+        if (matcher != null) {
+          return matcher;
+        }
+      }
+    }
+    return regex.matcher();
+  }
+
+  /**
+   * Hands back a {@code Matcher}, the reference to its last input is dropped.
+   */
+  void release(RegexMatcher matcher) {
+    matcher.reset();
+    int first = slot();
+    for (int i = 0; i < SIZE; i++) {
+      int index = (first + i) & (SIZE - 1);
+      if (matchers.get(index) == null && matchers.compareAndSet(index, null, matcher)) {
+        return;
+      }
+    }
+  }
+
+  private static int slot() {
+    return (int) Thread.currentThread().getId() & (SIZE - 1);
+  }
+}
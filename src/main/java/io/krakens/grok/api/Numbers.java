@@ -0,0 +1,291 @@
+package io.krakens.grok.api;
+
+import io.krakens.grok.api.Converter.IConverter;
+import io.krakens.grok.api.Converter.ILongConverter;
+import io.krakens.grok.api.Match.ParseStatus;
+
+/**
+ * {@code Numbers} parses decimal numbers and booleans from a range of a {@code CharSequence}, without
+ * creating a string or throwing: a range is first checked, then parsed.
+ *
+ * @since 0.1.10
+ */
+final class Numbers {
+
+  /**
+   * Powers of ten represented exactly by a double.
+   */
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * Largest number of significant digits a long holds exactly and a double too.
+   */
+  private static final int EXACT_DIGITS = 15;
+
+  /**
+   * Powers of ten represented exactly by a float.
+   */
+  private static final float[] FLOAT_POWERS_OF_TEN = {
+      1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+
+  /**
+   * Largest number of significant digits a float holds exactly.
+   */
+  private static final int EXACT_FLOAT_DIGITS = 7;
+
+  private Numbers() {}
+
+  /**
+   * Check that the range is a decimal integer, optionally signed, within the given bounds.
+   */
+  static ParseStatus checkLong(CharSequence text, int start, int end, long min, long max) {
+    int position = start;
+    boolean negative = false;
+    if (position < end && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+      negative = text.charAt(position) == '-';
+      position++;
+    }
+    if (position == end) {
+      return ParseStatus.INVALID;
+    }
+    // accumulated negatively, to reach Long.MIN_VALUE
+    long value = 0;
+    boolean overflow = false;
+    for (; position < end; position++) {
+      char current = text.charAt(position);
+      if (current < '0' || current > '9') {
+        return ParseStatus.INVALID;
+      }
+      int digit = current - '0';
+      if (value < (Long.MIN_VALUE + digit) / 10) {
+        overflow = true;
+      } else {
+        value = value * 10 - digit;
+      }
+    }
+    if (overflow || (negative ? value < min : value == Long.MIN_VALUE || -value > max)) {
+      return ParseStatus.OVERFLOW;
+    }
+    return ParseStatus.PARSED;
+  }
+
+  /**
+   * Parse a range checked by {@link #checkLong}.
+   */
+  static long parseLong(CharSequence text, int start, int end) {
+    int position = start;
+    boolean negative = text.charAt(position) == '-';
+    if (negative || text.charAt(position) == '+') {
+      position++;
+    }
+    long value = 0;
+    for (; position < end; position++) {
+      value = value * 10 - (text.charAt(position) - '0');
+    }
+    return negative ? value : -value;
+  }
+
+  /**
+   * Check that the range is an integer within the given bounds: a value of the converter when it is an
+   * {@link ILongConverter}, a decimal integer otherwise.
+   */
+  static ParseStatus checkLong(IConverter<?> converter, CharSequence text, int start, int end, long min, long max) {
+    if (!(converter instanceof ILongConverter)) {
+      return checkLong(text, start, end, min, max);
+    }
+    ILongConverter longConverter = (ILongConverter) converter;
+    if (!longConverter.accepts(text, start, end)) {
+      return ParseStatus.INVALID;
+    }
+    long value = longConverter.toLong(text, start, end);
+    return value < min || value > max ? ParseStatus.OVERFLOW : ParseStatus.PARSED;
+  }
+
+  /**
+   * Parse a range checked by {@link #checkLong(IConverter, CharSequence, int, int, long, long)}.
+   */
+  static long parseLong(IConverter<?> converter, CharSequence text, int start, int end) {
+    if (converter instanceof ILongConverter) {
+      return ((ILongConverter) converter).toLong(text, start, end);
+    }
+    return parseLong(text, start, end);
+  }
+
+  /**
+   * Check that the range is a decimal number such as {@code -12.5e3}, and that it is finite as a double.
+   */
+  static ParseStatus checkDouble(CharSequence text, int start, int end) {
+    int position = skipSign(text, start, end);
+    int digits = 0;
+    while (position < end && isDigit(text.charAt(position))) {
+      position++;
+      digits++;
+    }
+    if (position < end && text.charAt(position) == '.') {
+      position++;
+      while (position < end && isDigit(text.charAt(position))) {
+        position++;
+        digits++;
+      }
+    }
+    if (digits == 0) {
+      return ParseStatus.INVALID;
+    }
+    if (position < end && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+      position = skipSign(text, position + 1, end);
+      int exponentStart = position;
+      while (position < end && isDigit(text.charAt(position))) {
+        position++;
+      }
+      if (position == exponentStart) {
+        return ParseStatus.INVALID;
+      }
+    }
+    if (position != end) {
+      return ParseStatus.INVALID;
+    }
+    return Double.isInfinite(parseDouble(text, start, end)) ? ParseStatus.OVERFLOW : ParseStatus.PARSED;
+  }
+
+  /**
+   * Parse a range checked by {@link #checkDouble}. Numbers of up to 15 significant digits and a small
+   * exponent are computed exactly from the chars, others are parsed by {@link Double#parseDouble}.
+   */
+  static double parseDouble(CharSequence text, int start, int end) {
+    int position = skipSign(text, start, end);
+    boolean negative = position > start && text.charAt(start) == '-';
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean fraction = false;
+    for (; position < end; position++) {
+      char current = text.charAt(position);
+      if (current == '.') {
+        fraction = true;
+        continue;
+      }
+      if (!isDigit(current)) {
+        break;
+      }
+      if (mantissa != 0 || current != '0') {
+        digits++;
+      }
+      if (digits > EXACT_DIGITS) {
+        return Double.parseDouble(text.subSequence(start, end).toString());
+      }
+      mantissa = mantissa * 10 + (current - '0');
+      if (fraction) {
+        scale--;
+      }
+    }
+    if (position < end) {
+      // exponent
+      int exponentStart = skipSign(text, position + 1, end);
+      if (end - exponentStart > 3) {
+        return Double.parseDouble(text.subSequence(start, end).toString());
+      }
+      int exponent = 0;
+      for (int index = exponentStart; index < end; index++) {
+        exponent = exponent * 10 + (text.charAt(index) - '0');
+      }
+      scale += text.charAt(position + 1) == '-' ? -exponent : exponent;
+    }
+    double value;
+    if (mantissa == 0) {
+      value = 0;
+    } else if (scale >= 0 && scale < POWERS_OF_TEN.length) {
+      value = mantissa * POWERS_OF_TEN[scale];
+    } else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+      value = mantissa / POWERS_OF_TEN[-scale];
+    } else {
+      return Double.parseDouble(text.subSequence(start, end).toString());
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parse a range checked by {@link #checkDouble} as a float. Numbers of up to 7 significant digits and a
+   * small exponent are computed exactly from the chars, others are parsed by {@link Float#parseFloat}:
+   * rounding the double of the range to a float may be off by one ulp.
+   */
+  static float parseFloat(CharSequence text, int start, int end) {
+    int position = skipSign(text, start, end);
+    boolean negative = position > start && text.charAt(start) == '-';
+    int mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean fraction = false;
+    for (; position < end; position++) {
+      char current = text.charAt(position);
+      if (current == '.') {
+        fraction = true;
+        continue;
+      }
+      if (!isDigit(current)) {
+        break;
+      }
+      if (mantissa != 0 || current != '0') {
+        digits++;
+      }
+      if (digits > EXACT_FLOAT_DIGITS) {
+        return Float.parseFloat(text.subSequence(start, end).toString());
+      }
+      mantissa = mantissa * 10 + (current - '0');
+      if (fraction) {
+        scale--;
+      }
+    }
+    if (position < end) {
+      // exponent
+      return Float.parseFloat(text.subSequence(start, end).toString());
+    }
+    float value;
+    if (mantissa == 0) {
+      value = 0;
+    } else if (-scale < FLOAT_POWERS_OF_TEN.length) {
+      value = mantissa / FLOAT_POWERS_OF_TEN[-scale];
+    } else {
+      return Float.parseFloat(text.subSequence(start, end).toString());
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Check that the range is {@code true} or {@code false}, ignoring case.
+   */
+  static ParseStatus checkBoolean(CharSequence text, int start, int end) {
+    return equalsIgnoreCase(text, start, end, "true") || equalsIgnoreCase(text, start, end, "false")
+        ? ParseStatus.PARSED : ParseStatus.INVALID;
+  }
+
+  /**
+   * Parse a range as {@link Boolean#parseBoolean}: true when it is {@code true}, ignoring case.
+   */
+  static boolean parseBoolean(CharSequence text, int start, int end) {
+    return equalsIgnoreCase(text, start, end, "true");
+  }
+
+  private static boolean equalsIgnoreCase(CharSequence text, int start, int end, String expected) {
+    if (end - start != expected.length()) {
+      return false;
+    }
+    for (int index = 0; index < expected.length(); index++) {
+      if (Character.toLowerCase(text.charAt(start + index)) != expected.charAt(index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int skipSign(CharSequence text, int position, int end) {
+    return position < end && (text.charAt(position) == '-' || text.charAt(position) == '+') ? position + 1 : position;
+  }
+
+  private static boolean isDigit(char value) {
+    return value >= '0' && value <= '9';
+  }
+}
@@ -0,0 +1,135 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * {@code PatternDefinitions} is a read only overlay of inline definitions on top of a shared snapshot
+ * of the registered pattern definitions.
+ * <br>
+ * A compiled {@link Grok} only keeps its own %{Foo=regex} definitions; the registered ones are shared
+ * by every {@code Grok} compiled from the same snapshot.
+ *
+ * @since 0.1.10
+ */
+final class PatternDefinitions extends AbstractMap<String, String> implements Serializable {
+
+  private final Map<String, String> base;
+  private final Map<String, String> overlay;
+  private final int size;
+
+  private PatternDefinitions(Map<String, String> base, Map<String, String> overlay) {
+    this.base = base;
+    this.overlay = overlay;
+    int size = base.size();
+    for (String name : overlay.keySet()) {
+      if (!base.containsKey(name)) {
+        size++;
+      }
+    }
+    this.size = size;
+  }
+
+  /**
+   * Immutable copy of the given definitions, without overlay: a {@code Grok} tells the definitions it
+   * shares from those of its own by their class.
+   */
+  static Map<String, String> snapshot(Map<String, String> definitions) {
+    return new PatternDefinitions(Collections.unmodifiableMap(new HashMap<>(definitions)), Collections.emptyMap());
+  }
+
+  /**
+   * Read only view of the inline definitions on top of the snapshot, the snapshot itself when
+   * there is no inline definition.
+   */
+  static Map<String, String> overlay(Map<String, String> snapshot, Map<String, String> inlineDefinitions) {
+    if (inlineDefinitions.isEmpty()) {
+      return snapshot;
+    }
+    Map<String, String> base = snapshot instanceof PatternDefinitions ? ((PatternDefinitions) snapshot).base : snapshot;
+    return new PatternDefinitions(base, Collections.unmodifiableMap(new HashMap<>(inlineDefinitions)));
+  }
+
+  /**
+   * Definitions which are not shared with the snapshot.
+   */
+  Map<String, String> getOverlay() {
+    return overlay;
+  }
+
+  @Override
+  public String get(Object name) {
+    String definition = overlay.get(name);
+    return definition != null ? definition : base.get(name);
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    return overlay.containsKey(name) || base.containsKey(name);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<Entry<String, String>>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Iterates the overlay first, then the snapshot entries which are not overridden.
+   */
+  private final class EntryIterator implements Iterator<Entry<String, String>> {
+    private final Iterator<Entry<String, String>> overlayEntries = overlay.entrySet().iterator();
+    private final Iterator<Entry<String, String>> baseEntries = base.entrySet().iterator();
+    private Entry<String, String> next;
+
+    @Override
+    public boolean hasNext() {
+      if (next != null) {
+        return true;
+      }
+      if (overlayEntries.hasNext()) {
+        next = overlayEntries.next();
+        return true;
+      }
+      while (baseEntries.hasNext()) {
+        Entry<String, String> entry = baseEntries.next();
+        if (!overlay.containsKey(entry.getKey())) {
+          next = entry;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Entry<String, String> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Entry<String, String> entry = next;
+      next = null;
+      return entry;
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package io.krakens.grok.api;
+
+import static java.lang.String.format;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+/**
+ * {@code PatternExpander} expands the {@code %{...}} references of a {@code Grok} pattern into a named regex.
+ * <br>
+ * Every definition is tokenized once into literal and reference segments and memoized. The expansion
+ * tree is built from those segments and written into a single {@link StringBuilder}, instead of
+ * rewriting the whole regex once per reference.
+ * <br>
+ * Group ids are handed out in the historical order: the leftmost pending reference first, together
+ * with every other pending occurrence of the very same reference, so the named regex and the
+ * named regex collection are the same as before.
+ *
+ * @since 0.1.10
+ */
+final class PatternExpander implements Serializable {
+
+  /** flag for infinite recursion. */
+  private static final int MAX_ITERATIONS = 1000;
+
+  /**
+   * Memoized segments (literal {@code String} or {@link Reference}) of already tokenized definitions.
+   */
+  private final Map<String, Object[]> segments = new ConcurrentHashMap<>();
+
+  /**
+   * Expands the given pattern.
+   *
+   * @param pattern : Grok pattern (ex: %{IP})
+   * @param definitions : registered pattern definitions, only read
+   * @param namedOnly : whether unnamed references are expanded as non capturing groups
+   * @return the expansion
+   * @throws IllegalArgumentException when a reference has no definition or the recursion is too deep
+   */
+  Expansion expand(String pattern, Map<String, String> definitions, boolean namedOnly) {
+    return expand(pattern, definitions, namedOnly, null);
+  }
+
+  /**
+   * Expands the given pattern, capturing the given fields only. The references of the other fields are
+   * expanded as non capturing groups, and left out of the named regex collection.
+   *
+   * @param pattern : Grok pattern (ex: %{IP})
+   * @param definitions : registered pattern definitions, only read
+   * @param namedOnly : whether unnamed references are expanded as non capturing groups
+   * @param fields : names of the fields to capture, without type, or null to capture them all
+   * @return the expansion
+   * @throws IllegalArgumentException when a reference has no definition or the recursion is too deep
+   */
+  Expansion expand(String pattern, Map<String, String> definitions, boolean namedOnly, Set<String> fields) {
+    Map<String, String> inlineDefinitions = new HashMap<>();
+    Map<String, String> namedRegexCollection = new HashMap<>();
+
+    Node pending = new Node(null);
+    Object[] root = instantiate(parse(pattern), pending);
+
+    int index = 0;
+    int iterationLeft = MAX_ITERATIONS;
+    while (true) {
+      if (iterationLeft <= 0) {
+        throw new IllegalArgumentException("Deep recursion pattern compilation of " + pattern);
+      }
+      iterationLeft--;
+
+      Node first = pending.next;
+      if (first == pending) {
+        break;
+      }
+      Reference reference = first.reference;
+      // %{Foo=regex} -> add new regex definition
+      if (reference.definition != null) {
+        inlineDefinitions.put(reference.pattern, reference.definition);
+      }
+      String definition = inlineDefinitions.get(reference.pattern);
+      if (definition == null) {
+        definition = definitions.get(reference.pattern);
+      }
+      if (definition == null) {
+        throw new IllegalArgumentException(format("No definition for key '%s' found, aborting",
+            reference.pattern));
+      }
+
+      // Collect first, the expansion of one occurrence is not part of this round
+      List<Node> occurrences = new ArrayList<>();
+      for (Node node = first; node != pending; node = node.next) {
+        if (node.reference.token.equals(reference.token)) {
+          occurrences.add(node);
+        }
+      }
+
+      Object[] definitionSegments = tokenize(definition);
+      for (Node node : occurrences) {
+        node.index = index;
+        namedRegexCollection.put("name" + index, reference.name);
+        node.children = instantiate(definitionSegments, node);
+        node.unlink();
+        index++;
+      }
+    }
+
+    StringBuilder namedRegex = new StringBuilder(pattern.length() * 8);
+    write(root, namedOnly, fields, namedRegex, namedRegexCollection);
+    return new Expansion(namedRegex.toString(), namedRegexCollection, inlineDefinitions);
+  }
+
+  /**
+   * Estimates the heap retained by the memoized definitions, the definitions themselves excluded.
+   */
+  long estimateRetainedSize() {
+    long size = SizeEstimator.object(1) + SizeEstimator.entries(segments.size());
+    for (Object[] parts : segments.values()) {
+      size += SizeEstimator.array(parts.length);
+      for (Object part : parts) {
+        if (part instanceof Reference) {
+          Reference reference = (Reference) part;
+          size += SizeEstimator.object(5) + SizeEstimator.string(reference.token)
+              + SizeEstimator.string(reference.pattern) + SizeEstimator.string(reference.subname)
+              + SizeEstimator.string(reference.definition) + SizeEstimator.string(reference.name);
+        } else {
+          size += SizeEstimator.string((String) part);
+        }
+      }
+    }
+    return size;
+  }
+
+  private Object[] tokenize(String definition) {
+    Object[] parts = segments.get(definition);
+    if (parts == null) {
+      parts = parse(definition);
+      segments.put(definition, parts);
+    }
+    return parts;
+  }
+
+  private static Object[] parse(String definition) {
+    List<Object> parts = new ArrayList<>();
+    Matcher matcher = GrokUtils.GROK_PATTERN.matcher(definition);
+    int last = 0;
+    while (matcher.find()) {
+      if (matcher.start() > last) {
+        parts.add(definition.substring(last, matcher.start()));
+      }
+      parts.add(new Reference(matcher));
+      last = matcher.end();
+    }
+    if (last < definition.length()) {
+      parts.add(definition.substring(last));
+    }
+    return parts.toArray();
+  }
+
+  /**
+   * Creates the nodes of the given segments and queues them, in order, right after {@code position}.
+   */
+  private static Object[] instantiate(Object[] segments, Node position) {
+    Object[] parts = segments.clone();
+    for (int i = 0; i < parts.length; i++) {
+      if (parts[i] instanceof Reference) {
+        Node node = new Node((Reference) parts[i]);
+        node.linkAfter(position);
+        position = node;
+        parts[i] = node;
+      }
+    }
+    return parts;
+  }
+
+  private static void write(Object[] parts, boolean namedOnly, Set<String> fields, StringBuilder namedRegex,
+      Map<String, String> namedRegexCollection) {
+    for (Object part : parts) {
+      if (part instanceof Node) {
+        Node node = (Node) part;
+        if (fields != null && !fields.contains(Converter.extractKey(node.reference.name))) {
+          namedRegex.append("(?:");
+          namedRegexCollection.remove("name" + node.index);
+        } else if (namedOnly && node.reference.subname == null) {
+          namedRegex.append("(?:");
+        } else {
+          namedRegex.append("(?<name").append(node.index).append('>');
+        }
+        write(node.children, namedOnly, fields, namedRegex, namedRegexCollection);
+        namedRegex.append(')');
+      } else {
+        namedRegex.append((String) part);
+      }
+    }
+  }
+
+  /**
+   * Result of an expansion.
+   */
+  static final class Expansion {
+    final String namedRegex;
+    final Map<String, String> namedRegexCollection;
+    /** Definitions added by %{Foo=regex} references, last one wins. */
+    final Map<String, String> inlineDefinitions;
+
+    private Expansion(String namedRegex, Map<String, String> namedRegexCollection,
+        Map<String, String> inlineDefinitions) {
+      this.namedRegex = namedRegex;
+      this.namedRegexCollection = namedRegexCollection;
+      this.inlineDefinitions = inlineDefinitions.isEmpty()
+          ? Collections.emptyMap() : inlineDefinitions;
+    }
+  }
+
+  /**
+   * A parsed %{pattern:subname=definition} reference.
+   */
+  private static final class Reference implements Serializable {
+    /** Full reference text, occurrences with the same text are expanded together. */
+    final String token;
+    final String pattern;
+    final String subname;
+    final String definition;
+    /** Name stored in the named regex collection. */
+    final String name;
+
+    Reference(Matcher matcher) {
+      this.token = matcher.group();
+      this.pattern = matcher.group("pattern");
+      this.subname = matcher.group("subname");
+      this.definition = matcher.group("definition");
+      if (subname != null) {
+        this.name = subname;
+      } else if (definition != null) {
+        this.name = matcher.group("name") + "=" + definition;
+      } else {
+        this.name = matcher.group("name");
+      }
+    }
+  }
+
+  /**
+   * An occurrence of a reference in the expansion tree, also linked in the queue of pending occurrences
+   * until it is expanded.
+   */
+  private static final class Node {
+    final Reference reference;
+    int index;
+    Object[] children;
+    Node previous = this;
+    Node next = this;
+
+    Node(Reference reference) {
+      this.reference = reference;
+    }
+
+    void linkAfter(Node position) {
+      previous = position;
+      next = position.next;
+      position.next.previous = this;
+      position.next = this;
+    }
+
+    void unlink() {
+      previous.next = next;
+      next.previous = previous;
+    }
+  }
+}
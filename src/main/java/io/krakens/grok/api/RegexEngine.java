@@ -0,0 +1,24 @@
+package io.krakens.grok.api;
+
+import java.io.Serializable;
+
+/**
+ * {@code RegexEngine} compiles the named regex of a {@link Grok}.
+ * <br>
+ * {@link JdkRegexEngine} (backed by {@code java.util.regex}) is the default; {@link LinearRegexEngine}
+ * guarantees a matching time linear in the length of the text for the regexes it supports.
+ * Engines are selected with {@link GrokCompiler#setRegexEngine(RegexEngine)}.
+ *
+ * @since 0.1.10
+ */
+public interface RegexEngine extends Serializable {
+
+  /**
+   * Compiles the given regex, in the {@code java.util.regex.Pattern} syntax.
+   *
+   * @param regex : named regex
+   * @return the compiled regex
+   * @throws IllegalArgumentException when the regex is invalid or not supported by the engine
+   */
+  CompiledRegex compile(String regex) throws IllegalArgumentException;
+}
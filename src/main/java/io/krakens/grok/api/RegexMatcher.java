@@ -0,0 +1,43 @@
+package io.krakens.grok.api;
+
+/**
+ * {@code RegexMatcher} applies a {@link CompiledRegex} to a range of a text.
+ * <br>
+ * The range is matched as if it were the whole text: anchors match at its bounds and lookarounds
+ * can't see past them. A matcher is reusable but not thread safe; the group offsets refer to the
+ * text and are valid until the next match or {@link #reset()}.
+ *
+ * @since 0.1.10
+ */
+public interface RegexMatcher {
+
+  /**
+   * Searches the first match in the <tt>[start, end)</tt> range of the text.
+   */
+  boolean find(CharSequence text, int start, int end);
+
+  /**
+   * Matches the regex at the beginning of the <tt>[start, end)</tt> range of the text.
+   */
+  boolean lookingAt(CharSequence text, int start, int end);
+
+  /**
+   * Matches the regex against the whole <tt>[start, end)</tt> range of the text.
+   */
+  boolean matches(CharSequence text, int start, int end);
+
+  /**
+   * Start offset of the given group in the last match, -1 when the group didn't match.
+   */
+  int start(int group);
+
+  /**
+   * End offset of the given group in the last match, -1 when the group didn't match.
+   */
+  int end(int group);
+
+  /**
+   * Drops the reference to the last text.
+   */
+  void reset();
+}
@@ -0,0 +1,281 @@
+package io.krakens.grok.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code RequiredLiterals} extracts from a regex the literal strings every match must contain,
+ * such as {@code " HTTP/"} or {@code "["}.
+ * <br>
+ * The analysis is conservative: it follows the mandatory parts of the regex only, gives up on
+ * alternations and optional parts, and returns nothing for regexes with inline flags, which could make
+ * the literals case insensitive. A string missing from a line proves the regex can't match it, a string
+ * present proves nothing.
+ *
+ * @since 0.1.10
+ */
+final class RequiredLiterals {
+
+  private final String regex;
+  private int position;
+
+  private RequiredLiterals(String regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * Get the literals required by the given regex, the longest first. Literals contained in another one
+   * are dropped.
+   *
+   * @param regex : regex in the {@code java.util.regex.Pattern} syntax
+   * @return required literals, empty when none can be found
+   */
+  static List<String> of(String regex) {
+    if (hasInlineFlags(regex)) {
+      return Collections.emptyList();
+    }
+    List<String> literals;
+    try {
+      RequiredLiterals parser = new RequiredLiterals(regex);
+      literals = new ArrayList<>(parser.alternation().literals);
+      if (parser.position < regex.length()) {
+        return Collections.emptyList();
+      }
+    } catch (RuntimeException e) {
+      // not a valid regex, the compilation will report it
+      return Collections.emptyList();
+    }
+    literals.sort((left, right) -> Integer.compare(right.length(), left.length()));
+    List<String> required = new ArrayList<>();
+    for (String literal : literals) {
+      if (required.stream().noneMatch(longer -> longer.contains(literal))) {
+        required.add(literal);
+      }
+    }
+    return required;
+  }
+
+  private static boolean hasInlineFlags(String regex) {
+    for (int index = regex.indexOf("(?"); index >= 0; index = regex.indexOf("(?", index + 1)) {
+      if (index + 2 < regex.length()) {
+        char next = regex.charAt(index + 2);
+        if (next == '-' || Character.isLetter(next)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * What a part of the regex requires: literals found anywhere in it, and the exact string it matches
+   * when it only matches one.
+   */
+  private static final class Result {
+    static final Result NOTHING = new Result(Collections.emptyList(), null);
+
+    final List<String> literals;
+    final String exact;
+
+    Result(List<String> literals, String exact) {
+      this.literals = literals;
+      this.exact = exact;
+    }
+
+    static Result exact(String value) {
+      List<String> literals = new ArrayList<>(1);
+      literals.add(value);
+      return new Result(literals, value);
+    }
+  }
+
+  private boolean more() {
+    return position < regex.length();
+  }
+
+  private char peek() {
+    return regex.charAt(position);
+  }
+
+  private Result alternation() {
+    Result first = sequence();
+    if (!more() || peek() != '|') {
+      return first;
+    }
+    while (more() && peek() == '|') {
+      position++;
+      sequence();
+    }
+    return Result.NOTHING;
+  }
+
+  private Result sequence() {
+    List<String> literals = new ArrayList<>();
+    StringBuilder run = new StringBuilder();
+    boolean exact = true;
+    while (more() && peek() != '|' && peek() != ')') {
+      Result atom = atom();
+      int min = 1;
+      boolean once = true;
+      if (more()) {
+        char current = peek();
+        boolean quantified = true;
+        if (current == '*' || current == '?') {
+          min = 0;
+          once = false;
+          position++;
+        } else if (current == '+') {
+          once = false;
+          position++;
+        } else if (current == '{') {
+          int close = regex.indexOf('}', position);
+          String[] bounds = regex.substring(position + 1, close).split(",", -1);
+          min = Integer.parseInt(bounds[0].trim());
+          once = min == 1 && bounds.length == 1;
+          position = close + 1;
+        } else {
+          quantified = false;
+        }
+        // lazy or possessive, even after {1}
+        if (quantified && more() && (peek() == '?' || peek() == '+')) {
+          position++;
+        }
+      }
+      if (once && atom.exact != null) {
+        run.append(atom.exact);
+        continue;
+      }
+      exact = false;
+      flush(run, literals);
+      if (min > 0) {
+        literals.addAll(atom.literals);
+      }
+    }
+    if (exact) {
+      return Result.exact(run.toString());
+    }
+    flush(run, literals);
+    return new Result(literals, null);
+  }
+
+  private static void flush(StringBuilder run, List<String> literals) {
+    if (run.length() > 0) {
+      literals.add(run.toString());
+      run.setLength(0);
+    }
+  }
+
+  private Result atom() {
+    char current = regex.charAt(position++);
+    switch (current) {
+      case '(':
+        return group();
+      case '[':
+        skipClass();
+        return Result.NOTHING;
+      case '.':
+      case '^':
+      case '$':
+        return Result.NOTHING;
+      case '\\':
+        return escape();
+      default:
+        return Result.exact(String.valueOf(current));
+    }
+  }
+
+  private Result group() {
+    boolean lookaround = false;
+    if (more() && peek() == '?') {
+      if (regex.startsWith("?:", position) || regex.startsWith("?>", position)) {
+        position += 2;
+      } else if (regex.startsWith("?=", position) || regex.startsWith("?!", position)) {
+        position += 2;
+        lookaround = true;
+      } else if (regex.startsWith("?<=", position) || regex.startsWith("?<!", position)) {
+        position += 3;
+        lookaround = true;
+      } else {
+        // named group
+        position = regex.indexOf('>', position) + 1;
+      }
+    }
+    Result body = alternation();
+    if (!more() || peek() != ')') {
+      throw new IllegalArgumentException("Unclosed group");
+    }
+    position++;
+    return lookaround ? Result.NOTHING : body;
+  }
+
+  private Result escape() {
+    char current = regex.charAt(position++);
+    switch (current) {
+      case 'Q':
+        int quoteEnd = regex.indexOf("\\E", position);
+        int literalEnd = quoteEnd < 0 ? regex.length() : quoteEnd;
+        String quoted = regex.substring(position, literalEnd);
+        position = quoteEnd < 0 ? regex.length() : quoteEnd + 2;
+        return Result.exact(quoted);
+      case 't':
+        return Result.exact("\t");
+      case 'n':
+        return Result.exact("\n");
+      case 'r':
+        return Result.exact("\r");
+      case 'f':
+        return Result.exact("\f");
+      case 'x':
+        position = peek() == '{' ? regex.indexOf('}', position) + 1 : position + 2;
+        return Result.NOTHING;
+      case 'u':
+        position += 4;
+        return Result.NOTHING;
+      case 'c':
+        position++;
+        return Result.NOTHING;
+      case 'p':
+      case 'P':
+      case 'N':
+        position = peek() == '{' ? regex.indexOf('}', position) + 1 : position + 1;
+        return Result.NOTHING;
+      case 'k':
+        position = regex.indexOf('>', position) + 1;
+        return Result.NOTHING;
+      default:
+        if (Character.isLetterOrDigit(current)) {
+          // classes, anchors, back references and octal escapes
+          while (Character.isDigit(current) && more() && Character.isDigit(peek())) {
+            position++;
+          }
+          return Result.NOTHING;
+        }
+        return Result.exact(String.valueOf(current));
+    }
+  }
+
+  private void skipClass() {
+    int depth = 1;
+    if (more() && peek() == '^') {
+      position++;
+    }
+    if (more() && peek() == ']') {
+      position++;
+    }
+    while (depth > 0) {
+      char current = regex.charAt(position++);
+      if (current == '\\') {
+        if (peek() == 'Q') {
+          position = regex.indexOf("\\E", position) + 2;
+        } else {
+          position++;
+        }
+      } else if (current == '[') {
+        depth++;
+      } else if (current == ']') {
+        depth--;
+      }
+    }
+  }
+}
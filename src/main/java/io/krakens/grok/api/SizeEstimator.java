@@ -0,0 +1,67 @@
+package io.krakens.grok.api;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * {@code SizeEstimator} gives rough heap sizes, in bytes, of the structures held by {@code Grok}.
+ * <br>
+ * Estimates assume a 64-bit JVM with two bytes per char, they are meant for accounting, not for exact sizing.
+ *
+ * @since 0.1.10
+ */
+final class SizeEstimator {
+
+  static final long OBJECT = 16;
+  static final long REFERENCE = 8;
+  /** Hash map node, including its slot in the table. */
+  static final long MAP_ENTRY = 40;
+  /**
+   * Measured average of a compiled {@code java.util.regex.Pattern}, per char of its regex.
+   */
+  static final long PATTERN_PER_CHAR = 18;
+
+  private SizeEstimator() {}
+
+  static long object(int references) {
+    return OBJECT + REFERENCE * references;
+  }
+
+  static long string(CharSequence value) {
+    return value == null ? 0 : 40 + 2L * value.length();
+  }
+
+  static long array(int length) {
+    return OBJECT + REFERENCE * length;
+  }
+
+  static long pattern(String regex) {
+    return 64 + PATTERN_PER_CHAR * regex.length();
+  }
+
+  /**
+   * Map of strings, keys and values included.
+   */
+  static long map(Map<String, String> map) {
+    long size = OBJECT * 3;
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      size += MAP_ENTRY + string(entry.getKey()) + string(entry.getValue());
+    }
+    return size;
+  }
+
+  /**
+   * Map or set whose entries hold no object of their own, only {@code entries} nodes are counted.
+   */
+  static long entries(int entries) {
+    return OBJECT * 3 + MAP_ENTRY * entries;
+  }
+
+  static long strings(Collection<String> values) {
+    long size = 0;
+    for (String value : values) {
+      size += string(value);
+    }
+    return size;
+  }
+}
@@ -0,0 +1,546 @@
+package io.krakens.grok.api;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.TextStyle;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@code TimestampParser} reads the common timestamp layouts from a range of a line without a
+ * {@code DateTimeFormatter}: ISO 8601, the date of the Apache access log, the date of syslog and epoch
+ * seconds or milliseconds.
+ * <br>
+ * A parser only accepts the values the formatter of its layout reads, with the same fields, and returns null
+ * for the others, left to the formatter. The syslog parser is the exception: a syslog date has no year, which
+ * the formatter rejects, and the parser infers the year from the clock.
+ * <br>
+ * A parser keeps the date and time up to the second of the last value: the lines of a log often share it, and
+ * then only the fraction and the offset of the value are read.
+ *
+ * @since 0.1.10
+ */
+abstract class TimestampParser {
+
+  /**
+   * Date format of epoch seconds, with an optional fraction.
+   */
+  static final String UNIX = "UNIX";
+  /**
+   * Date format of epoch milliseconds.
+   */
+  static final String UNIX_MS = "UNIX_MS";
+
+  private static final int INVALID = Integer.MIN_VALUE;
+  private static final int MAXIMUM_OFFSET = 18 * 3600;
+  private static final int[] NANOS_SCALE = {
+      1_000_000_000, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1
+  };
+
+  private static final String[] MONTHS = {
+      "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+  };
+
+  private static final Pattern ISO_FORMAT = Pattern.compile(
+      "yyyy-MM-dd(?:'T'| )HH:mm:ss(?:([.,])(S{1,9}))?(?:( ?)(ZZ?Z?|XXX?|xxx?))?");
+
+  private enum OffsetStyle {
+    /** The value has no offset, it is in the zone of the converter. */
+    NONE,
+    /**
+     * {@code +HHMM}.
+     */
+    HHMM,
+    /**
+     * {@code +HHMM} or {@code Z}.
+     */
+    HHMM_OR_Z,
+    /**
+     * {@code +HH:MM}.
+     */
+    HH_MM,
+    /**
+     * {@code +HH:MM} or {@code Z}.
+     */
+    HH_MM_OR_Z,
+    /**
+     * {@code +HH:MM}, {@code Z} or nothing, as {@code DateTimeFormatter.ISO_DATE_TIME}.
+     */
+    OPTIONAL
+  }
+
+  /**
+   * Zone of the values without offset.
+   */
+  final ZoneId zone;
+  private volatile Second last;
+
+  private TimestampParser(ZoneId zone) {
+    this.zone = zone;
+  }
+
+  /**
+   * Parser of the values of {@code DateTimeFormatter.ISO_DATE_TIME} without region, such as
+   * {@code 2018-02-01T10:20:30.5+01:00}.
+   *
+   * @param zone : zone of the values without offset
+   */
+  static TimestampParser isoDateTime(ZoneId zone) {
+    return new IsoParser(zone, 'T', true, '.', -1, false, OffsetStyle.OPTIONAL);
+  }
+
+  /**
+   * Parser of the given date format, read by {@code DateTimeFormatter.ofPattern} in the default locale.
+   *
+   * @param format : date format given after {@code ;date;} in a pattern
+   * @param zone : zone of the values without offset
+   * @return parser of the layout, null when there is none
+   */
+  static TimestampParser of(String format, ZoneId zone) {
+    if (isEpoch(format)) {
+      return new EpochParser(zone, UNIX_MS.equals(format));
+    }
+    Matcher iso = ISO_FORMAT.matcher(format);
+    if (iso.matches()) {
+      String offset = iso.group(4);
+      OffsetStyle style = OffsetStyle.NONE;
+      if (offset != null) {
+        style = offset.charAt(0) == 'Z' || offset.equals("xx") ? OffsetStyle.HHMM
+            : offset.equals("XX") ? OffsetStyle.HHMM_OR_Z
+            : offset.equals("xxx") ? OffsetStyle.HH_MM
+            : offset.equals("XXX") ? OffsetStyle.HH_MM_OR_Z : null;
+      }
+      if (style == null) {
+        return null;
+      }
+      return new IsoParser(zone, format.charAt(10) == '\'' ? 'T' : ' ', false,
+          iso.group(1) == null ? '.' : iso.group(1).charAt(0), iso.group(2) == null ? 0 : iso.group(2).length(),
+          " ".equals(iso.group(3)), style);
+    }
+    if (!hasEnglishMonths(Locale.getDefault(Locale.Category.FORMAT))) {
+      return null;
+    }
+    if (format.equals("dd/MMM/yyyy:HH:mm:ss Z")) {
+      return new ApacheParser(zone);
+    }
+    if (format.equals("MMM dd HH:mm:ss")) {
+      return new SyslogParser(zone, Clock.system(zone), 1, true);
+    }
+    if (format.equals("MMM d HH:mm:ss") || format.equals("MMM  d HH:mm:ss")) {
+      return new SyslogParser(zone, Clock.system(zone), format.indexOf('d') - 3, false);
+    }
+    return null;
+  }
+
+  /**
+   * Whether a date format is read by a parser, and not by a {@code DateTimeFormatter}.
+   */
+  static boolean isEpoch(String format) {
+    return UNIX.equals(format) || UNIX_MS.equals(format);
+  }
+
+  private static boolean hasEnglishMonths(Locale locale) {
+    for (Month month : Month.values()) {
+      if (!MONTHS[month.ordinal()].equals(month.getDisplayName(TextStyle.SHORT, locale))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parse the <tt>[start, end)</tt> range of the text, surrounding spaces excluded as by {@link String#trim()}.
+   *
+   * @return instant of the value, null when it is not in the layout of the parser
+   */
+  final Instant parse(CharSequence text, int start, int end) {
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return start == end ? null : read(text, start, end);
+  }
+
+  abstract Instant read(CharSequence text, int start, int end);
+
+  /**
+   * The second of the previous value, when the given key range has the same chars.
+   */
+  final Second cached(CharSequence text, int start, int end) {
+    Second current = last;
+    return current != null && current.matches(text, start, end) ? current : null;
+  }
+
+  /**
+   * Keep the second of a value, read from its key range.
+   *
+   * @return the second, null when the date or the time is not valid
+   */
+  final Second remember(CharSequence text, int start, int end, int year, int month, int day, int hour, int minute,
+      int second) {
+    if (year < 1 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+        || hour > 23 || minute > 59 || second > 59) {
+      // left to the formatter, which rejects or adjusts them
+      return null;
+    }
+    long localSecond = LocalDate.of(year, month, day).toEpochDay() * 86400 + hour * 3600 + minute * 60 + second;
+    int zoneOffset = zone instanceof ZoneOffset ? ((ZoneOffset) zone).getTotalSeconds()
+        : zone.getRules().getOffset(LocalDateTime.ofEpochSecond(localSecond, 0, ZoneOffset.UTC)).getTotalSeconds();
+    char[] key = new char[end - start];
+    for (int index = start; index < end; index++) {
+      key[index - start] = text.charAt(index);
+    }
+    Second remembered = new Second(key, localSecond, zoneOffset);
+    last = remembered;
+    return remembered;
+  }
+
+  /**
+   * Read a number of the given count of digits.
+   *
+   * @return value, -1 when the range is not made of digits or is not within the text
+   */
+  static int digits(CharSequence text, int position, int count, int end) {
+    if (position + count > end) {
+      return -1;
+    }
+    int value = 0;
+    for (int index = position; index < position + count; index++) {
+      char current = text.charAt(index);
+      if (current < '0' || current > '9') {
+        return -1;
+      }
+      value = value * 10 + current - '0';
+    }
+    return value;
+  }
+
+  private static int month(CharSequence text, int position, int end) {
+    if (position + 3 > end) {
+      return -1;
+    }
+    for (int month = 0; month < MONTHS.length; month++) {
+      String name = MONTHS[month];
+      if (text.charAt(position) == name.charAt(0) && text.charAt(position + 1) == name.charAt(1)
+          && text.charAt(position + 2) == name.charAt(2)) {
+        return month + 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Read an offset which ends the value.
+   *
+   * @return offset in seconds, {@link #INVALID} when it is not in the given style
+   */
+  private static int offset(CharSequence text, int position, int end, OffsetStyle style) {
+    if (end - position == 1 && text.charAt(position) == 'Z') {
+      return style == OffsetStyle.HHMM || style == OffsetStyle.HH_MM ? INVALID : 0;
+    }
+    boolean colon = style == OffsetStyle.HH_MM || style == OffsetStyle.HH_MM_OR_Z || style == OffsetStyle.OPTIONAL;
+    if (end - position != (colon ? 6 : 5) || (colon && text.charAt(position + 3) != ':')) {
+      return INVALID;
+    }
+    char sign = text.charAt(position);
+    int hours = digits(text, position + 1, 2, end);
+    int minutes = digits(text, position + (colon ? 4 : 3), 2, end);
+    if ((sign != '+' && sign != '-') || hours < 0 || minutes < 0 || minutes > 59
+        || hours * 3600 + minutes * 60 > MAXIMUM_OFFSET) {
+      return INVALID;
+    }
+    int seconds = hours * 3600 + minutes * 60;
+    return sign == '-' ? -seconds : seconds;
+  }
+
+  /**
+   * Date and time of a value up to the second, with the chars it was read from.
+   */
+  static final class Second {
+
+    private final char[] key;
+    /** Epoch second of the date and time at UTC. */
+    final long localSecond;
+    /** Offset of the zone of the parser at this date and time. */
+    final int zoneOffset;
+
+    Second(char[] key, long localSecond, int zoneOffset) {
+      this.key = key;
+      this.localSecond = localSecond;
+      this.zoneOffset = zoneOffset;
+    }
+
+    boolean matches(CharSequence text, int start, int end) {
+      if (end - start != key.length) {
+        return false;
+      }
+      for (int index = key.length - 1; index >= 0; index--) {
+        // the seconds change first
+        if (key[index] != text.charAt(start + index)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * {@code yyyy-MM-dd'T'HH:mm:ss}, with an optional fraction and offset.
+   */
+  private static final class IsoParser extends TimestampParser {
+
+    private final char separator;
+    private final boolean optionalSeconds;
+    private final char fractionSeparator;
+    /** Number of digits of the fraction, 0 without fraction, -1 for an optional fraction of up to 9 digits. */
+    private final int fractionDigits;
+    private final boolean offsetSpace;
+    private final OffsetStyle offsetStyle;
+
+    IsoParser(ZoneId zone, char separator, boolean optionalSeconds, char fractionSeparator, int fractionDigits,
+        boolean offsetSpace, OffsetStyle offsetStyle) {
+      super(zone);
+      this.separator = separator;
+      this.optionalSeconds = optionalSeconds;
+      this.fractionSeparator = fractionSeparator;
+      this.fractionDigits = fractionDigits;
+      this.offsetSpace = offsetSpace;
+      this.offsetStyle = offsetStyle;
+    }
+
+    @Override
+    Instant read(CharSequence text, int start, int end) {
+      boolean seconds = !optionalSeconds || (end - start > 16 && text.charAt(start + 16) == ':');
+      int keyEnd = start + (seconds ? 19 : 16);
+      if (keyEnd > end) {
+        return null;
+      }
+      Second second = cached(text, start, keyEnd);
+      if (second == null) {
+        if (text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-' || text.charAt(start + 10) != separator
+            || text.charAt(start + 13) != ':' || (seconds && text.charAt(start + 16) != ':')) {
+          return null;
+        }
+        int year = digits(text, start, 4, end);
+        int month = digits(text, start + 5, 2, end);
+        int day = digits(text, start + 8, 2, end);
+        int hour = digits(text, start + 11, 2, end);
+        int minute = digits(text, start + 14, 2, end);
+        int secondOfMinute = seconds ? digits(text, start + 17, 2, end) : 0;
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || secondOfMinute < 0) {
+          return null;
+        }
+        second = remember(text, start, keyEnd, year, month, day, hour, minute, secondOfMinute);
+        if (second == null) {
+          return null;
+        }
+      }
+      int position = keyEnd;
+      int nanos = 0;
+      if (seconds && fractionDigits != 0 && position < end && text.charAt(position) == fractionSeparator) {
+        int fractionStart = ++position;
+        while (position < end && position - fractionStart < 9 && isDigit(text.charAt(position))) {
+          nanos = nanos * 10 + text.charAt(position++) - '0';
+        }
+        int count = position - fractionStart;
+        if (count == 0 || (fractionDigits > 0 && count != fractionDigits)
+            || (position < end && isDigit(text.charAt(position)))) {
+          return null;
+        }
+        nanos *= NANOS_SCALE[count];
+      } else if (fractionDigits > 0) {
+        return null;
+      }
+      if (offsetStyle == OffsetStyle.NONE || (offsetStyle == OffsetStyle.OPTIONAL && position == end)) {
+        return position == end ? Instant.ofEpochSecond(second.localSecond - second.zoneOffset, nanos) : null;
+      }
+      if (offsetSpace) {
+        if (position == end || text.charAt(position) != ' ') {
+          return null;
+        }
+        position++;
+      }
+      int offset = offset(text, position, end, offsetStyle);
+      return offset == INVALID ? null : Instant.ofEpochSecond(second.localSecond - offset, nanos);
+    }
+  }
+
+  /**
+   * {@code dd/MMM/yyyy:HH:mm:ss Z}, the date of the Apache access log.
+   */
+  private static final class ApacheParser extends TimestampParser {
+
+    ApacheParser(ZoneId zone) {
+      super(zone);
+    }
+
+    @Override
+    Instant read(CharSequence text, int start, int end) {
+      int keyEnd = start + 20;
+      if (end - start != 26 || text.charAt(keyEnd) != ' ') {
+        return null;
+      }
+      Second second = cached(text, start, keyEnd);
+      if (second == null) {
+        if (text.charAt(start + 2) != '/' || text.charAt(start + 6) != '/' || text.charAt(start + 11) != ':'
+            || text.charAt(start + 14) != ':' || text.charAt(start + 17) != ':') {
+          return null;
+        }
+        int day = digits(text, start, 2, end);
+        int month = month(text, start + 3, end);
+        int year = digits(text, start + 7, 4, end);
+        int hour = digits(text, start + 12, 2, end);
+        int minute = digits(text, start + 15, 2, end);
+        int secondOfMinute = digits(text, start + 18, 2, end);
+        if (day < 0 || month < 0 || year < 0 || hour < 0 || minute < 0 || secondOfMinute < 0) {
+          return null;
+        }
+        second = remember(text, start, keyEnd, year, month, day, hour, minute, secondOfMinute);
+        if (second == null) {
+          return null;
+        }
+      }
+      int offset = offset(text, keyEnd + 1, end, OffsetStyle.HHMM);
+      return offset == INVALID ? null : Instant.ofEpochSecond(second.localSecond - offset);
+    }
+  }
+
+  /**
+   * {@code MMM dd HH:mm:ss}, the date of syslog, or {@code MMM d HH:mm:ss} and {@code MMM  d HH:mm:ss}, whose
+   * day has one or two digits. The day is read as the formatter would: {@code Mar  7} only matches the format
+   * with two spaces, {@code Mar 07} the formats with one.
+   * <br>
+   * The date has no year, which the formatter fails on: the parser takes the current year of the clock, or
+   * the previous one when the date would be more than a month ahead, such as the lines of December read in
+   * January. Parsing the same line again may thus give another year.
+   */
+  private static final class SyslogParser extends TimestampParser {
+
+    private static final long AHEAD_SECONDS = 31 * 86400;
+
+    private final Clock clock;
+    /**
+     * Spaces between the month and the day.
+     */
+    private final int spaces;
+    /**
+     * Whether the day always has two digits, {@code dd}, instead of one or two, {@code d}.
+     */
+    private final boolean twoDigitDay;
+
+    SyslogParser(ZoneId zone, Clock clock, int spaces, boolean twoDigitDay) {
+      super(zone);
+      this.clock = clock;
+      this.spaces = spaces;
+      this.twoDigitDay = twoDigitDay;
+    }
+
+    @Override
+    Instant read(CharSequence text, int start, int end) {
+      Second second = cached(text, start, end);
+      if (second == null) {
+        int month = month(text, start, end);
+        if (month < 0 || end - start < 13 + spaces) {
+          return null;
+        }
+        int position = start + 3;
+        for (int i = 0; i < spaces; i++) {
+          if (text.charAt(position++) != ' ') {
+            return null;
+          }
+        }
+        int day = digits(text, position, twoDigitDay ? 2 : 1, end);
+        if (day < 0) {
+          return null;
+        }
+        position += twoDigitDay ? 2 : 1;
+        if (!twoDigitDay && position < end && isDigit(text.charAt(position))) {
+          day = day * 10 + text.charAt(position++) - '0';
+        }
+        if (end - position != 9 || text.charAt(position) != ' ' || text.charAt(position + 3) != ':'
+            || text.charAt(position + 6) != ':') {
+          return null;
+        }
+        int hour = digits(text, position + 1, 2, end);
+        int minute = digits(text, position + 4, 2, end);
+        int secondOfMinute = digits(text, position + 7, 2, end);
+        if (hour < 0 || minute < 0 || secondOfMinute < 0) {
+          return null;
+        }
+        Instant now = clock.instant();
+        int year = now.atZone(zone).getYear();
+        second = remember(text, start, end, year, month, day, hour, minute, secondOfMinute);
+        if (second != null && second.localSecond - second.zoneOffset > now.getEpochSecond() + AHEAD_SECONDS) {
+          second = remember(text, start, end, year - 1, month, day, hour, minute, secondOfMinute);
+        }
+        if (second == null) {
+          return null;
+        }
+      }
+      return Instant.ofEpochSecond(second.localSecond - second.zoneOffset);
+    }
+  }
+
+  /**
+   * Epoch seconds with an optional fraction, or epoch milliseconds.
+   */
+  private static final class EpochParser extends TimestampParser {
+
+    /**
+     * Digits of an epoch within the range of {@code Instant}.
+     */
+    private static final int MAXIMUM_DIGITS = 15;
+
+    private final boolean millis;
+
+    EpochParser(ZoneId zone, boolean millis) {
+      super(zone);
+      this.millis = millis;
+    }
+
+    @Override
+    Instant read(CharSequence text, int start, int end) {
+      boolean negative = text.charAt(start) == '-';
+      int position = negative ? start + 1 : start;
+      int integerStart = position;
+      long value = 0;
+      while (position < end && position - integerStart < MAXIMUM_DIGITS && isDigit(text.charAt(position))) {
+        value = value * 10 + text.charAt(position++) - '0';
+      }
+      if (position == integerStart) {
+        return null;
+      }
+      int nanos = 0;
+      if (!millis && position < end && text.charAt(position) == '.') {
+        int fractionStart = ++position;
+        while (position < end && position - fractionStart < 9 && isDigit(text.charAt(position))) {
+          nanos = nanos * 10 + text.charAt(position++) - '0';
+        }
+        if (position == fractionStart) {
+          return null;
+        }
+        nanos *= NANOS_SCALE[position - fractionStart];
+      }
+      if (position != end) {
+        return null;
+      }
+      if (millis) {
+        return Instant.ofEpochMilli(negative ? -value : value);
+      }
+      return negative ? Instant.ofEpochSecond(-value, -nanos) : Instant.ofEpochSecond(value, nanos);
+    }
+  }
+
+  private static boolean isDigit(char value) {
+    return value >= '0' && value <= '9';
+  }
+}
@@ -0,0 +1,214 @@
+package io.krakens.grok.api;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code ValueDictionary} gives the same {@code String} instance for every occurrence of a value of a field,
+ * such as the verb or the status of an access log: the lines of a field taking a handful of values then
+ * share a handful of strings, instead of each holding its own copies.
+ * <br>
+ * A value is looked up straight from the range of the line, a string is only created the first time the
+ * value is seen. The dictionary holds at most {@link #getMaximumSize()} values: it is divided into sets of
+ * four entries, a value may only be kept in the set of its hash, and a new value replaces the least used
+ * entry of its set. The dictionary is thread safe and lock free, the use counts and the statistics are
+ * approximate under contention.
+ * <br>
+ * Dictionaries are enabled per field with {@link Grok#withInternedValues(String, int)}.
+ *
+ * @since 0.1.10
+ */
+public final class ValueDictionary {
+
+  private static final int WAYS = 4;
+  private static final int MAXIMUM_USES = 127;
+  /** Bits of the linear counting sketch estimating the number of distinct values. */
+  private static final int SKETCH_BITS = 1 << 12;
+
+  private final String field;
+  private final String[] entries;
+  private final byte[] uses;
+  private final int setMask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final AtomicLongArray sketch = new AtomicLongArray(SKETCH_BITS / 64);
+
+  /**
+   * Create a dictionary of the given field.
+   *
+   * @param field : name of the field, for the statistics
+   * @param maximumSize : maximum number of values, rounded up to a power of two of at least 4
+   * @throws IllegalArgumentException when the maximum size is not positive or too large
+   */
+  ValueDictionary(String field, int maximumSize) {
+    if (maximumSize <= 0 || maximumSize > 1 << 24) {
+      throw new IllegalArgumentException("Dictionary size should be between 1 and " + (1 << 24) + ": " + maximumSize);
+    }
+    int capacity = Math.max(WAYS, Integer.highestOneBit(maximumSize - 1) << 1);
+    this.field = field;
+    this.entries = new String[capacity];
+    this.uses = new byte[capacity];
+    this.setMask = capacity / WAYS - 1;
+  }
+
+  /**
+   * Get the canonical string of the <tt>[start, end)</tt> range of the given text, adding it to the
+   * dictionary when it is not there.
+   *
+   * @param text : text, such as a matched line
+   * @param start : index of the first char of the value
+   * @param end : index after the last char of the value
+   * @return string of the chars of the range, the same instance as the previous occurrences of the value
+   *     as long as it stays in the dictionary
+   */
+  public String intern(CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int index = start; index < end; index++) {
+      hash = 31 * hash + text.charAt(index);
+    }
+    int spread = hash * 0x9E3779B9;
+    int base = ((spread ^ spread >>> 16) & setMask) * WAYS;
+    for (int slot = base; slot < base + WAYS; slot++) {
+      String entry = entries[slot];
+      if (entry != null && entry.hashCode() == hash && contentEquals(entry, text, start, end)) {
+        if (uses[slot] < MAXIMUM_USES) {
+          uses[slot]++;
+        }
+        hits.increment();
+        return entry;
+      }
+    }
+    misses.increment();
+    sketch(spread);
+    String value = text.subSequence(start, end).toString();
+    // the least used entry of the set leaves, the others age so that former hot values leave in turn
+    int victim = base;
+    for (int slot = base; slot < base + WAYS; slot++) {
+      if (entries[slot] == null) {
+        victim = slot;
+        break;
+      }
+      if (uses[slot] < uses[victim]) {
+        victim = slot;
+      }
+    }
+    if (entries[victim] != null) {
+      evictions.increment();
+      for (int slot = base; slot < base + WAYS; slot++) {
+        uses[slot] >>= 1;
+      }
+    }
+    entries[victim] = value;
+    uses[victim] = 1;
+    return value;
+  }
+
+  /**
+   * Get the canonical string of the given value, see {@link #intern(CharSequence, int, int)}.
+   */
+  public String intern(CharSequence value) {
+    return intern(value, 0, value.length());
+  }
+
+  private static boolean contentEquals(String entry, CharSequence text, int start, int end) {
+    if (entry.length() != end - start) {
+      return false;
+    }
+    for (int index = 0; index < entry.length(); index++) {
+      if (entry.charAt(index) != text.charAt(start + index)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void sketch(int spread) {
+    int bit = (spread >>> 7) & (SKETCH_BITS - 1);
+    long mask = 1L << bit;
+    int word = bit >>> 6;
+    long current = sketch.get(word);
+    while ((current & mask) == 0 && !sketch.compareAndSet(word, current, current | mask)) {
+      current = sketch.get(word);
+    }
+  }
+
+  /**
+   * Get the name of the field of this dictionary.
+   */
+  public String getField() {
+    return field;
+  }
+
+  /**
+   * Get the maximum number of values held by the dictionary.
+   */
+  public int getMaximumSize() {
+    return entries.length;
+  }
+
+  /**
+   * Number of values currently held by the dictionary.
+   */
+  public int size() {
+    int size = 0;
+    for (String entry : entries) {
+      if (entry != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Number of lookups which found their value in the dictionary.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Number of lookups which created a string, for a new value or a value evicted before.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Number of values which left the dictionary to make room for another one.
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Share of the lookups which found their value in the dictionary, 0 before the first one.
+   */
+  public double getHitRate() {
+    long found = hits.sum();
+    long lookups = found + misses.sum();
+    return lookups == 0 ? 0 : (double) found / lookups;
+  }
+
+  /**
+   * Estimate the number of distinct values seen by the dictionary, including the evicted ones. The estimate
+   * is within a few percent up to some thousands of values, and stops growing at about 34000.
+   *
+   * @return estimated cardinality of the field
+   */
+  public long estimateCardinality() {
+    int zeros = 0;
+    for (int word = 0; word < sketch.length(); word++) {
+      zeros += Long.bitCount(~sketch.get(word));
+    }
+    // linear counting
+    return Math.round(SKETCH_BITS * Math.log((double) SKETCH_BITS / Math.max(zeros, 1)));
+  }
+
+  @Override
+  public String toString() {
+    return "ValueDictionary{field=" + field + ", size=" + size() + "/" + entries.length
+        + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount()
+        + ", cardinality~" + estimateCardinality() + "}";
+  }
+}
@@ -3,13 +3,30 @@ package io.krakens.grok.api;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import io.krakens.grok.api.Grok.MatchMode;
 import io.krakens.grok.api.exception.GrokException;
 
 import com.google.common.io.Resources;
@@ -146,4 +163,482 @@ public class CaptureTest {
           containsString("has multiple non-null values, this is not allowed in flattened mode"));
     }
   }
+
+  @Test
+  public void test009_expansionOrderOfRepeatedReferences() throws GrokException {
+    compiler.register("foo", "a%{bar}b");
+    compiler.register("bar", "%{baz}|%{baz:x}");
+    compiler.register("baz", "\\d");
+    Grok grok = compiler.compile("%{foo} %{foo} %{bar}");
+    assertEquals("(?<name0>a(?<name2>(?<name5>\\d)|(?<name8>\\d))b) (?<name1>a(?<name3>(?<name6>\\d)|(?<name9>\\d))b) "
+        + "(?<name4>(?<name7>\\d)|(?<name10>\\d))", grok.getNamedRegex());
+    assertEquals("foo", grok.getNamedRegexCollectionById("name1"));
+    assertEquals("bar", grok.getNamedRegexCollectionById("name4"));
+    assertEquals("x", grok.getNamedRegexCollectionById("name10"));
+    assertEquals(11, grok.getNamedRegexCollection().size());
+  }
+
+  @Test
+  public void test010_matchOutlivesPooledMatcher() throws GrokException {
+    Grok grok = compiler.compile("%{WORD:verb} %{INT:status}");
+    Match first = grok.match("GET 200");
+    Match second = grok.match("POST 404");
+    assertEquals("{verb=GET, status=200}", first.capture().toString());
+    assertEquals("{verb=POST, status=404}", second.capture().toString());
+    assertEquals("GET 200", first.getMatch().group());
+    assertTrue(grok.match("nothing").isNull());
+  }
+
+  @Test
+  public void test011_nameGroupIndexes() {
+    Map<String, Integer> indexes = GrokUtils.getNameGroupIndexes(
+        "(a)(?<name0>[(\\]]+)(?:b)(?<name1>\\((?<name2>c))\\Q(?<x>\\E(?<=d)(e)(?<name3>f)");
+    assertEquals("{name0=2, name1=3, name2=4, name3=6}", indexes.toString());
+    assertNull(GrokUtils.getNameGroupIndexes("(?x)(?<name0>a # b)"));
+  }
+
+  @Test
+  public void test012_capturePlan() {
+    Grok grok = compiler.compile("%{INT:n:int} %{WORD:n} %{WORD:n_grokfailure} %{WORD:UNWANTED}");
+    assertEquals(3, grok.capturePlan.length);
+    assertEquals("n", grok.capturePlan[0].key);
+    assertTrue(grok.capturePlan[1].merge);
+
+    Map<String, Object> map = grok.match("12 ab cd ef").capture();
+    assertEquals("{n=[12, ab], n_grokfailure=cd}", map.toString());
+    map = compiler.compile("%{WORD:n:int} %{WORD:n_grokfailure}").match("ab cd").capture();
+    assertEquals("[java.lang.NumberFormatException: For input string: \"ab\", cd]",
+        map.get("n_grokfailure").toString());
+    // a typed group which did not take part in the match keeps the key of its semantic, type included
+    grok = compiler.compile("%{WORD:w} (?:%{INT:n;int}|-) %{WORD:n}");
+    map = grok.match("x - ab").capture();
+    assertEquals("{w=x, n;int=null, n=ab}", map.toString());
+    assertEquals("{w=x, n=[7, ab]}", grok.match("x 7 ab").capture().toString());
+    Map<String, Object> view = grok.match("x - ab").lazyCapture();
+    assertEquals("ab", view.get("n"));
+    assertTrue(view.containsKey("n;int"));
+    assertEquals(map, view);
+    assertEquals("[7, ab]", grok.match("x 7 ab").lazyCapture().get("n").toString());
+  }
+
+  @Test
+  public void test013_lazyCapture() {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    String line = "112.169.19.192 - - [06/Mar/2013:01:36:30 +0900] \"GET / HTTP/1.1\" 200 44346 \"-\" "
+        + "\"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_8_2)\"";
+    Map<String, Object> view = grok.match(line).lazyCapture();
+    assertEquals("GET", view.get("verb"));
+    assertTrue(view.containsKey("rawrequest"));
+    assertNull(view.get("rawrequest"));
+    assertNull(view.get("unknown"));
+    assertEquals(grok.match(line).capture(), view);
+    assertEquals(grok.match(line).capture().keySet().toString(), view.keySet().toString());
+
+    Match match = grok.match(line);
+    match.setKeepEmptyCaptures(false);
+    view = match.lazyCapture();
+    assertFalse(view.containsKey("rawrequest"));
+    assertEquals(match.capture(), view);
+
+    grok = compiler.compile("%{WORD:n:int} %{WORD:n} %{INT:n}");
+    view = grok.match("ab cd 12").lazyCapture();
+    assertEquals("[ab, cd, 12]", view.get("n").toString());
+    assertThat(view.get("n_grokfailure").toString(), containsString("NumberFormatException"));
+    assertEquals("[n_grokfailure, n]", view.keySet().toString());
+    try {
+      view.put("n", "x");
+      fail("the view is read only");
+    } catch (UnsupportedOperationException expected) {
+      assertEquals("12", ((List<?>) view.get("n")).get(2));
+    }
+  }
+
+  @Test
+  public void test014_projection() {
+    String line = "112.169.19.192 - - [06/Mar/2013:01:36:30 +0900] \"GET / HTTP/1.1\" 200 44346 \"-\" \"curl\"";
+    compiler.enableCache(10);
+    Grok full = compiler.compile("%{COMBINEDAPACHELOG}");
+    Grok projected = compiler.compile("%{COMBINEDAPACHELOG}", new HashSet<>(Arrays.asList("clientip", "response",
+        "bytes")));
+    assertEquals("{clientip=112.169.19.192, response=200, bytes=44346}", projected.match(line).capture().toString());
+    assertEquals(3, projected.namedGroups.size());
+    assertTrue(projected.getNamedRegex().length() < full.getNamedRegex().length());
+    assertTrue(projected.match("not a log").isNull());
+    assertSame(projected, compiler.compile("%{COMBINEDAPACHELOG}", new HashSet<>(Arrays.asList("bytes", "response",
+        "clientip"))));
+    assertNotSame(full, compiler.compile("%{COMBINEDAPACHELOG}", ZoneId.systemDefault(), false, MatchMode.FIND,
+        Collections.emptySet()));
+
+    Grok typed = compiler.compile("%{INT:status:int} %{INT:size:long}", Collections.singleton("status"));
+    assertEquals(Collections.singleton("status:int"), typed.converters.keySet());
+    assertEquals("{status=200}", typed.match("200 12").capture().toString());
+  }
+
+  @Test
+  public void test015_slices() throws Exception {
+    Grok grok = compiler.compile("%{WORD:verb} %{QS:agent} %{INT:status:int} %{WORD:verb}");
+    String line = "GET \"curl\" 200 HEAD";
+    Match match = grok.match(line);
+    CharSlice agent = match.getSlice("agent");
+    assertTrue(agent.contentEquals("curl"));
+    assertEquals("curl".hashCode(), agent.hashCode());
+    assertEquals(CharSlice.of(line, 5, 9), agent);
+    assertEquals("url", agent.subSequence(1, 4).toString());
+    assertNull(match.getSlice("unknown"));
+
+    Map<String, Object> slices = match.captureSlices();
+    assertEquals(match.capture().toString(), slices.toString());
+    assertEquals(200, slices.get("status"));
+    assertTrue(((List<?>) slices.get("verb")).get(1) instanceof CharSlice);
+
+    StringWriter out = new StringWriter();
+    agent.appendTo(out);
+    StringBuilder builder = new StringBuilder();
+    match.getSlice("verb").appendTo(builder);
+    assertEquals("curl", out.toString());
+    assertEquals("GET", builder.toString());
+  }
+
+  @Test
+  public void test016_visitor() {
+    Grok grok = compiler.compile("(?:%{WORD:verb} %{QS:agent}|%{INT:verb:int}) %{INT:status:int}");
+    List<String> visits = new ArrayList<>();
+    CaptureVisitor visitor = (fieldId, key, subject, start, end, type) ->
+        visits.add(fieldId + ":" + key + "=" + (start < 0 ? null : subject.subSequence(start, end)) + ":" + type);
+    assertTrue(grok.match("GET \"curl\" 200", visitor));
+    assertEquals("[0:verb=GET:STRING, 1:agent=curl:STRING, 0:verb=null:INT, 2:status=200:INT]",
+        visits.toString());
+    assertFalse(grok.match("nothing", visitor));
+
+    visits.clear();
+    assertTrue(grok.match("404 200", new CaptureVisitor() {
+      @Override
+      public void visit(int fieldId, String key, CharSequence subject, int start, int end, Converter.Type type) {
+        visitor.visit(fieldId, key, subject, start, end, type);
+      }
+
+      @Override
+      public boolean isFlattened() {
+        return true;
+      }
+
+      @Override
+      public boolean isKeepEmptyCaptures() {
+        return false;
+      }
+    }));
+    assertEquals("[0:verb=404:INT, 2:status=200:INT]", visits.toString());
+
+    visits.clear();
+    // the regex reads every x of the line, whatever the engine
+    Grok budgeted = compiler.compile("%{WORD:verb} (?<repeated>x+)y")
+        .withMatchBudget(MatchBudget.ofCharReads(1_000));
+    String line = "GET " + String.join("", Collections.nCopies(10_000, "x"));
+    CaptureVisitor abortable = new CaptureVisitor() {
+      @Override
+      public void visit(int fieldId, String key, CharSequence subject, int start, int end, Converter.Type type) {
+        visitor.visit(fieldId, key, subject, start, end, type);
+      }
+
+      @Override
+      public void aborted(CharSequence subject) {
+        visits.add("aborted:" + subject);
+      }
+    };
+    assertFalse(budgeted.match(line, abortable));
+    assertFalse(budgeted.match("nothing", abortable));
+    assertEquals(Collections.singletonList("aborted:" + line), visits);
+    assertEquals(1, budgeted.getAbortedMatchCount());
+  }
+
+  public static class Request {
+    public String verb;
+    private int status;
+    private Long bytes;
+    private Instant timestamp;
+    private boolean ok = true;
+
+    public void setStatus(int status) {
+      this.status = status;
+    }
+
+    public void setBytes(Long bytes) {
+      this.bytes = bytes;
+    }
+
+    public void setTimestamp(Instant timestamp) {
+      this.timestamp = timestamp;
+    }
+  }
+
+  public static class Ratio {
+    public float ratio;
+    public Float boxed;
+  }
+
+  public static class Unnamed {
+    public Unnamed(String verb) {
+    }
+  }
+
+  @Test
+  public void test017_binding() {
+    Grok grok = compiler.compile("%{WORD:verb} %{INT:status:int} (?:%{INT:bytes}|-) %{TIMESTAMP_ISO8601:timestamp;date;"
+        + "yyyy-MM-dd HH:mm:ss} %{WORD:ok}", ZoneOffset.UTC, false);
+    GrokBinder<Request> binder = grok.binder(Request.class);
+    assertSame(binder, grok.binder(Request.class));
+
+    Request request = binder.match("GET 200 512 2018-02-01 10:20:30 false");
+    assertEquals("GET", request.verb);
+    assertEquals(200, request.status);
+    assertEquals(Long.valueOf(512), request.bytes);
+    assertEquals(Instant.parse("2018-02-01T10:20:30Z"), request.timestamp);
+    assertFalse(request.ok);
+
+    GrokRecord record = grok.newRecord();
+    grok.match("POST 99999999999 - 2018-02-01 10:20:30 maybe", record);
+    request = binder.bind(record);
+    assertEquals(0, request.status);
+    assertNull(request.bytes);
+    assertTrue(request.ok);
+    assertNull(binder.match("nothing"));
+
+    try {
+      grok.binder(Unnamed.class);
+      fail("the parameter names are not in the class file");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("No usable constructor"));
+    }
+
+    // rounded once to a float, not to a double then to a float
+    String halfway = "1.00000005960464477539063";
+    assertEquals(1.0f, (float) Double.parseDouble(halfway), 0);
+    Ratio ratio = compiler.compile("%{NUMBER:ratio} %{NUMBER:boxed}").binder(Ratio.class)
+        .match(halfway + " " + halfway);
+    assertEquals(Float.parseFloat(halfway), ratio.ratio, 0);
+    assertEquals(Float.valueOf(Float.parseFloat(halfway)), ratio.boxed);
+  }
+
+  @Test
+  public void test018_valueDictionary() {
+    compiler.enableCache(10);
+    Grok shared = compiler.compile("%{WORD:verb} %{QS:agent} %{INT:status:int}");
+    Grok verbGrok = shared.withInternedValues("verb", 4);
+    ValueDictionary verbs = verbGrok.getValueDictionary("verb");
+    assertEquals(4, verbs.getMaximumSize());
+    assertNull(verbGrok.getValueDictionary("agent"));
+    Grok grok = verbGrok.withInternedValues("agent", 16);
+    assertSame(verbs, grok.getValueDictionary("verb"));
+    assertNull(verbGrok.getValueDictionary("agent"));
+    // the cached Grok, shared with the other callers, interns nothing
+    assertSame(shared, compiler.compile("%{WORD:verb} %{QS:agent} %{INT:status:int}"));
+    assertNull(shared.getValueDictionary("verb"));
+    assertNotSame(shared.match("GET \"curl\" 200").capture().get("verb"),
+        shared.match("GET \"curl\" 200").capture().get("verb"));
+
+    String first = (String) grok.match("GET \"curl\" 200").capture().get("verb");
+    String second = (String) grok.match(new StringBuilder("GET \"curl\" 404")).capture().get("verb");
+    assertEquals("GET", second);
+    assertSame(first, second);
+    assertSame(first, grok.match("GET \"wget\" 500").lazyCapture().get("verb"));
+    GrokRecord record = grok.newRecord();
+    assertTrue(grok.match("GET \"curl\" 200", record));
+    assertSame(first, record.getString(0));
+    // unquoted before lookup
+    assertSame(grok.getValueDictionary("agent").intern("curl"), record.getString(1));
+    assertEquals(3, verbs.getHitCount());
+    assertEquals(1, verbs.getMissCount());
+
+    for (int i = 0; i < 20; i++) {
+      grok.match("VERB" + i + " \"curl\" 200").capture();
+    }
+    assertEquals(4, verbs.getMaximumSize());
+    assertTrue(verbs.size() <= 4);
+    assertTrue(verbs.getEvictionCount() >= 17);
+    assertEquals(21, verbs.estimateCardinality());
+
+    try {
+      grok.withInternedValues("unknown", 10);
+      fail("no such field");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("No field unknown"));
+    }
+  }
+
+  @Test
+  public void test019_rangeConversion() {
+    Grok grok = compiler.compile("%{NOTSPACE:status:int} %{NOTSPACE:bytes:long} %{NOTSPACE:ratio:float} "
+        + "%{NOTSPACE:time:double} %{NOTSPACE:level:short}");
+    Map<String, Object> map = grok.match("200 -12 0.25 1.5e3 7").capture();
+    assertEquals(200, map.get("status"));
+    assertEquals(-12L, map.get("bytes"));
+    assertEquals(0.25f, map.get("ratio"));
+    assertEquals(1500.0, map.get("time"));
+    assertEquals((short) 7, map.get("level"));
+
+    map = grok.match("- 99999999999999999999 NaN x 40000").capture();
+    assertEquals("-", map.get("status"));
+    assertEquals("java.lang.NumberFormatException: For input string: \"-\"", map.get("status_grokfailure"));
+    assertEquals("java.lang.NumberFormatException: For input string: \"99999999999999999999\"",
+        map.get("bytes_grokfailure"));
+    assertEquals(Float.NaN, map.get("ratio"));
+    assertFalse(map.containsKey("ratio_grokfailure"));
+    assertEquals("x", map.get("time"));
+    assertEquals("java.lang.NumberFormatException: Value out of range. Value:\"40000\" Radix:10",
+        map.get("level_grokfailure"));
+    assertEquals(map, grok.match("- 99999999999999999999 NaN x 40000").lazyCapture());
+
+    GrokRecord record = grok.newRecord();
+    assertTrue(grok.match("- 12 0.25 x 7", record));
+    assertEquals("-", record.getValue(0));
+    assertEquals(12L, record.getValue(1));
+  }
+
+  static final class Ipv4Converter implements Converter.ILongConverter {
+
+    @Override
+    public boolean accepts(CharSequence text, int start, int end) {
+      int dots = 0;
+      int octet = -1;
+      for (int index = start; index < end; index++) {
+        char ch = text.charAt(index);
+        if (ch == '.' && octet >= 0 && dots < 3) {
+          dots++;
+          octet = -1;
+        } else if (ch >= '0' && ch <= '9' && octet < 26) {
+          octet = Math.max(octet, 0) * 10 + ch - '0';
+          if (octet > 255) {
+            return false;
+          }
+        } else {
+          return false;
+        }
+      }
+      return dots == 3 && octet >= 0;
+    }
+
+    @Override
+    public long toLong(CharSequence text, int start, int end) {
+      long address = 0;
+      int octet = 0;
+      for (int index = start; index < end; index++) {
+        char ch = text.charAt(index);
+        if (ch == '.') {
+          address = address << 8 | octet;
+          octet = 0;
+        } else {
+          octet = octet * 10 + ch - '0';
+        }
+      }
+      return address << 8 | octet;
+    }
+  }
+
+  public static class Connection {
+    public long client;
+    public int server;
+  }
+
+  @Test
+  public void test020_customConverters() throws Exception {
+    compiler.registerConverter("IPv4", new Ipv4Converter());
+    compiler.registerConverter("duration", new Converter.IConverter<Long>() {
+      @Override
+      public Long convert(String value) {
+        return Long.parseLong(value);
+      }
+
+      @Override
+      public Converter.IConverter<Long> newConverter(String param, Object... params) {
+        long scale = "s".equals(param) ? 1000 : 1;
+        return value -> Long.parseLong(value) * scale;
+      }
+    });
+    assertTrue(compiler.getConverters().containsKey("ipv4"));
+
+    Grok grok = compiler.compile("%{NOTSPACE:client;ipv4} %{NOTSPACE:server:ipv4} %{INT:timeout;duration;s}");
+    assertEquals(Converter.Type.CUSTOM, grok.getSchema().getType(0));
+    Map<String, Object> map = grok.match("10.0.0.1 192.168.1.2 30").capture();
+    assertEquals(167772161L, map.get("client"));
+    assertEquals(3232235778L, map.get("server"));
+    assertEquals(30000L, map.get("timeout"));
+
+    Match match = grok.match("10.0.0.1 192.168.1.2 30");
+    assertEquals(167772161L, match.getLong("client"));
+    assertEquals(0, match.getInt("server"));
+    assertEquals(Match.ParseStatus.OVERFLOW, match.getParseStatus());
+    GrokRecord record = grok.newRecord();
+    assertTrue(grok.match("10.0.0.1 10.0.1.2 5", record));
+    assertEquals(167772418L, record.getLong(1));
+    Connection connection = grok.binder(Connection.class).bind(record);
+    assertEquals(167772161L, connection.client);
+    assertEquals(167772418, connection.server);
+
+    map = grok.match("10.0.0.256 localhost 1").capture();
+    assertEquals("10.0.0.256", map.get("client"));
+    assertEquals("java.lang.IllegalArgumentException: Invalid value: \"10.0.0.256\"",
+        map.get("client_grokfailure"));
+    assertEquals("localhost", map.get("server"));
+    assertEquals(0, grok.match("10.0.0.256 localhost 1").getLong("client"));
+
+    try {
+      compiler.registerConverter("Integer", new Ipv4Converter());
+      fail("built in type");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("Type already built in"));
+    }
+    try {
+      compiler.compile("%{NOTSPACE:client;ipv6}");
+      fail("unknown type");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("Invalid data type"));
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(compiler);
+    }
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      GrokCompiler copy = (GrokCompiler) input.readObject();
+      assertTrue(copy.getConverters().isEmpty());
+      copy.registerConverter("ipv4", new Ipv4Converter());
+      assertEquals(167772161L, copy.compile("%{NOTSPACE:client;ipv4}").capture("10.0.0.1").get("client"));
+    }
+
+    compiler.enableCache(10);
+    grok = compiler.compile("%{NOTSPACE:client;ipv4}");
+    assertSame(grok, compiler.compile("%{NOTSPACE:client;ipv4}"));
+    compiler.registerConverter("ipv4", value -> value);
+    assertEquals("10.0.0.1", compiler.compile("%{NOTSPACE:client;ipv4}").capture("10.0.0.1").get("client"));
+  }
+
+  @Test
+  public void test021_serialization() throws Exception {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    GrokSet set = compiler.compileSet(Arrays.asList("%{COMBINEDAPACHELOG}", "%{WORD:verb}"));
+    compiler.setRegexEngine(LinearRegexEngine.withFallback(JdkRegexEngine.INSTANCE));
+    Map<String, String> patterns = new LinkedHashMap<>();
+    patterns.put("apache", "%{COMBINEDAPACHELOG}");
+    patterns.put("verb", "%{WORD:verb}");
+    GrokSet combined = compiler.compileSet(patterns, ZoneOffset.UTC, false, MatchMode.FIND, true);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(grok);
+      output.writeObject(set);
+      output.writeObject(combined);
+    }
+    String line = "112.169.19.192 - - [06/Mar/2013:01:36:30 +0900] \"GET / HTTP/1.1\" 200 44346 \"-\" "
+        + "\"Mozilla/5.0\"";
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      Grok copy = (Grok) input.readObject();
+      assertEquals(grok.capture(line), copy.capture(line));
+      assertEquals(grok.getSchema().getNames(), copy.getSchema().getNames());
+      GrokSet setCopy = (GrokSet) input.readObject();
+      assertEquals(grok.capture(line), setCopy.capture(line));
+      assertEquals("GET", setCopy.capture("GET").get("verb"));
+      GrokSet combinedCopy = (GrokSet) input.readObject();
+      assertTrue(combinedCopy.isCombined());
+      assertEquals(grok.capture(line), combinedCopy.capture(line));
+    }
+  }
 }
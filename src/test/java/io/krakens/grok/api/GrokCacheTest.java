@@ -0,0 +1,59 @@
+package io.krakens.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.time.ZoneOffset;
+
+import com.google.common.io.Resources;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class GrokCacheTest {
+
+  GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.register(Resources.getResource(ResourceManager.PATTERNS).openStream());
+    compiler.enableCache(2);
+  }
+
+  @Test
+  public void test001_sameCompilationIsShared() {
+    Grok grok = compiler.compile("%{IP:client} %{WORD:verb}");
+    assertSame(grok, compiler.compile("%{IP:client} %{WORD:verb}"));
+    assertNotSame(grok, compiler.compile("%{IP:client} %{WORD:verb}", true));
+    assertNotSame(grok, compiler.compile("%{IP:client} %{WORD:verb}", ZoneOffset.ofHours(2), false));
+    assertEquals(1, compiler.getCacheHitCount());
+    assertEquals(3, compiler.getCacheMissCount());
+    assertEquals(2, compiler.getCacheSize());
+    assertEquals(1, compiler.getCacheEvictionCount());
+  }
+
+  @Test
+  public void test002_registerInvalidates() {
+    compiler.register("foo", "\\w+");
+    Grok grok = compiler.compile("%{foo}", true);
+    compiler.register("foo", "\\w+");
+    assertSame(grok, compiler.compile("%{foo}", true));
+
+    compiler.register("foo", "\\d+");
+    assertEquals(0, compiler.getCacheSize());
+    Grok other = compiler.compile("%{foo}", true);
+    assertNotSame(grok, other);
+    assertEquals("(?:\\d+)", other.getNamedRegex());
+  }
+
+  @Test
+  public void test003_disabled() {
+    compiler.disableCache();
+    assertNotSame(compiler.compile("%{IP}"), compiler.compile("%{IP}"));
+    assertEquals(0, compiler.getCacheHitCount());
+  }
+}
@@ -0,0 +1,168 @@
+package io.krakens.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.io.Resources;
+import io.krakens.grok.api.Grok.MatchMode;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class GrokSetTest {
+
+  GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.register(Resources.getResource(ResourceManager.PATTERNS).openStream());
+  }
+
+  @Test
+  public void test001_firstMatchWins() {
+    Map<String, String> patterns = new LinkedHashMap<>();
+    patterns.put("apache", "%{COMMONAPACHELOG}");
+    patterns.put("syslog", "%{SYSLOGTIMESTAMP:timestamp} %{SYSLOGHOST:host} %{DATA:program}: %{GREEDYDATA:message}");
+    patterns.put("any", "%{GREEDYDATA:message}");
+    GrokSet set = compiler.compileSet(patterns);
+    assertEquals(Arrays.asList("apache", "syslog", "any"), set.getIds());
+
+    GrokSetMatch match = set.match("Mar  7 16:45:56 host sshd: Accepted password");
+    assertEquals("syslog", match.getId());
+    assertEquals(1, match.getIndex());
+    assertSame(set.getGrok("syslog"), match.getGrok());
+    assertEquals("Accepted password", match.capture().get("message"));
+
+    match = set.match("64.242.88.10 - - [07/Mar/2004:16:45:56 -0800] \"GET /index.html HTTP/1.1\" 200 12846");
+    assertEquals("apache", match.getId());
+    assertEquals("GET", match.capture().get("verb"));
+
+    assertEquals("any", set.match("something else").getId());
+  }
+
+  @Test
+  public void test002_noMatch() {
+    GrokSet set = compiler.compileSet(Arrays.asList("%{IP:ip}", "%{INT:number}"));
+    assertEquals("%{INT:number}", set.match("port 80").getId());
+    GrokSetMatch match = set.match("no digits here");
+    assertTrue(match.isNull());
+    assertSame(GrokSetMatch.EMPTY, match);
+    assertNull(match.getId());
+    assertTrue(match.capture().isEmpty());
+  }
+
+  @Test
+  public void test003_requiredLiterals() {
+    Grok grok = compiler.compile("%{WORD:verb} /index HTTP/%{NUMBER:version} (?:%{INT}|-) \\[x?y\\]");
+    assertEquals(Arrays.asList(" /index HTTP/", " [", "y]"), grok.getRequiredLiterals());
+    assertEquals(Collections.emptyList(), compiler.compile("%{WORD}|%{INT}").getRequiredLiterals());
+    assertEquals(Collections.emptyList(), compiler.compile("(?i)GET %{WORD}").getRequiredLiterals());
+    assertEquals(Arrays.asList("id=", ";"), compiler.compile("id=%{INT:id}{1}+;").getRequiredLiterals());
+    assertEquals(Arrays.asList("ab;"), compiler.compile("ab{1}?;").getRequiredLiterals());
+    GrokSet set = compiler.compileSet(Arrays.asList("id=%{INT:id}{1}+;", "x"));
+    assertEquals("12", set.match("id=12;").capture().get("id"));
+  }
+
+  @Test
+  public void test004_prefilterSkipsPatterns() {
+    GrokSet set = compiler.compileSet(Arrays.asList("%{WORD:verb} /index HTTP/%{NUMBER:version}",
+        "postfix/%{WORD:process}\\[%{INT:pid}\\]"));
+    // a regex reading a single char would be aborted and counted
+    set.setMatchBudget(MatchBudget.ofCharReads(1));
+    assertTrue(set.match("GET /other HTTP/1.1 and postfix/smtpd").isNull());
+    for (Grok grok : set.getGroks()) {
+      assertEquals(0, grok.getAbortedMatchCount());
+      assertNull(grok.getMatchBudget());
+    }
+
+    set.setMatchBudget(null);
+    GrokSetMatch match = set.match("Mar 7 host postfix/smtpd[123]: connect");
+    assertEquals(1, match.getIndex());
+    assertEquals("123", match.capture().get("pid"));
+  }
+
+  @Test
+  public void test005_adaptiveOrdering() {
+    GrokSet set = compiler.compileSet(Arrays.asList("a=%{INT:a}", "b=%{INT:b}", "c=%{INT:c}"));
+    for (int i = 0; i < 10; i++) {
+      assertEquals(2, set.match("c=" + i).getIndex());
+    }
+    set.match("b=1");
+    assertEquals(10, set.getHitCount("c=%{INT:c}"));
+    assertEquals(Arrays.asList("a=%{INT:a}", "b=%{INT:b}", "c=%{INT:c}"), set.getOrder());
+
+    set.reorder();
+    assertEquals(Arrays.asList("c=%{INT:c}", "b=%{INT:b}", "a=%{INT:a}"), set.getOrder());
+    assertEquals(2, set.match("c=1").getIndex());
+
+    set.setPinned(Arrays.asList("a=%{INT:a}", "c=%{INT:c}"));
+    set.reorder();
+    assertEquals(Arrays.asList("b=%{INT:b}", "a=%{INT:a}", "c=%{INT:c}"), set.getOrder());
+
+    set.enableAdaptiveOrdering(Duration.ofHours(1));
+    assertTrue(set.isAdaptiveOrderingEnabled());
+    set.disableAdaptiveOrdering();
+    assertEquals(Arrays.asList("a=%{INT:a}", "b=%{INT:b}", "c=%{INT:c}"), set.getOrder());
+  }
+
+  @Test
+  public void test006_combined() {
+    Map<String, String> patterns = new LinkedHashMap<>();
+    patterns.put("apache", "%{COMMONAPACHELOG}");
+    patterns.put("syslog", "%{SYSLOGTIMESTAMP:timestamp} %{SYSLOGHOST:host} %{DATA:program}: %{GREEDYDATA:message}");
+    patterns.put("port", "port %{INT:port}");
+    GrokSet sequential = compiler.compileSet(patterns, ZoneOffset.UTC, false, MatchMode.FIND);
+    GrokSet combined = compiler.compileSet(patterns, ZoneOffset.UTC, false, MatchMode.FIND, true);
+    assertFalse(sequential.isCombined());
+    assertTrue(combined.isCombined());
+
+    for (String line : Arrays.asList("Mar  7 16:45:56 host sshd: Accepted password",
+        "64.242.88.10 - - [07/Mar/2004:16:45:56 -0800] \"GET /index.html HTTP/1.1\" 200 12846",
+        "listening on port 8080", "nothing")) {
+      GrokSetMatch expected = sequential.match(line);
+      GrokSetMatch actual = combined.match(line);
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.capture(), actual.capture());
+    }
+    assertEquals(1, combined.getHitCount("port"));
+
+    try {
+      combined.enableAdaptiveOrdering(Duration.ofMinutes(1));
+      fail("combined sets keep their order");
+    } catch (IllegalStateException expected) {
+      assertFalse(combined.isAdaptiveOrderingEnabled());
+    }
+  }
+
+  @Test
+  public void test007_abortedMatchStopsTheSet() {
+    compiler.enableCache(10);
+    String line = String.join("", Collections.nCopies(10_000, "x"));
+    GrokSet set = compiler.compileSet(Arrays.asList("(?<first>x+)(?:y|z)", "(?<second>x+)"));
+    set.setMatchBudget(MatchBudget.ofCharReads(1_000));
+    // the first pattern is cut short, the second one is not tried
+    assertSame(GrokSetMatch.ABORTED, set.match(line));
+    assertEquals(1, set.getAbortedMatchCount());
+    for (Grok grok : set.getGroks()) {
+      assertEquals(0, grok.getAbortedMatchCount());
+      assertEquals(0, compiler.compile(grok.getOriginalGrokPattern()).getAbortedMatchCount());
+    }
+
+    set.setMatchBudget(null);
+    assertEquals(1, set.match(line).getIndex());
+  }
+}
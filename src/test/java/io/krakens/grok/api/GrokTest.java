@@ -3,27 +3,36 @@ package io.krakens.grok.api;
 import static java.lang.String.format;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import io.krakens.grok.api.Match.ParseStatus;
 import io.krakens.grok.api.exception.GrokException;
 
 import com.google.common.collect.ImmutableMap;
@@ -584,6 +593,55 @@ public class GrokTest {
     assertEquals(expectedDate.toInstant(), gm.capture().get("result"));
   }
 
+  @Test
+  public void test030_datetime_common_layouts() throws Throwable {
+    Grok grok = compiler.compile("%{HTTPDATE:apache;date;dd/MMM/yyyy:HH:mm:ss Z} "
+        + "%{TIMESTAMP_ISO8601:iso;date;yyyy-MM-dd HH:mm:ss.SSS} %{NUMBER:epoch;date;UNIX} "
+        + "%{NUMBER:millis;date;UNIX_MS} %{SYSLOGTIMESTAMP:syslog;date;MMM  d HH:mm:ss}", ZoneId.of("Europe/Paris"),
+        false);
+    Map<String, Object> captures = grok.match("06/Mar/2013:01:36:30 +0900 2013-07-01 10:20:30.250 "
+        + "1362501390.5 1362501390500 Jan  1 00:00:00").capture();
+    assertEquals(Instant.parse("2013-03-05T16:36:30Z"), captures.get("apache"));
+    assertEquals(Instant.parse("2013-07-01T08:20:30.250Z"), captures.get("iso"));
+    assertEquals(Instant.parse("2013-03-05T16:36:30.500Z"), captures.get("epoch"));
+    assertEquals(Instant.parse("2013-03-05T16:36:30.500Z"), captures.get("millis"));
+    // syslog dates have no year
+    int year = ZonedDateTime.now(ZoneId.of("Europe/Paris")).getYear();
+    assertEquals(ZonedDateTime.of(year, 1, 1, 0, 0, 0, 0, ZoneId.of("Europe/Paris")).toInstant(),
+        captures.get("syslog"));
+
+    // same second, the date is read once
+    captures = grok.match("06/Mar/2013:01:36:30 -0100 2013-07-01 10:20:30.999 1 2 Jan  1 00:00:00").capture();
+    assertEquals(Instant.parse("2013-03-06T02:36:30Z"), captures.get("apache"));
+    assertEquals(Instant.parse("2013-07-01T08:20:30.999Z"), captures.get("iso"));
+
+    // other values are left to the formatter, which adjusts or rejects them
+    captures = grok.match("31/Feb/2013:01:36:30 +0900 2013-07-01 10:20:30.25 1 2 Jan  1 00:00:00").capture();
+    assertEquals(Instant.parse("2013-02-27T16:36:30Z"), captures.get("apache"));
+    assertEquals("2013-07-01 10:20:30.25", captures.get("iso"));
+    assertTrue(captures.containsKey("iso_grokfailure"));
+
+    // the day of a syslog date is read as its format reads it, the year is the current one
+    String[] lines = {"Mar 07 16:45:56", "Mar  7 16:45:56", "Mar 7 16:45:56", "Mar 17 16:45:56"};
+    String[] formats = {"MMM dd HH:mm:ss", "MMM d HH:mm:ss", "MMM  d HH:mm:ss"};
+    boolean[][] converted = {{true, false, false, true}, {true, false, true, true}, {false, true, false, false}};
+    for (int i = 0; i < formats.length; i++) {
+      Grok syslog = compiler.compile("%{SYSLOGTIMESTAMP:syslog;date;" + formats[i] + "}", ZoneOffset.UTC, false);
+      for (int j = 0; j < lines.length; j++) {
+        captures = syslog.match(lines[j]).capture();
+        assertEquals(formats[i] + " " + lines[j], !converted[i][j], captures.containsKey("syslog_grokfailure"));
+      }
+    }
+    year = ZonedDateTime.now(ZoneOffset.UTC).getYear();
+    captures = compiler.compile("%{SYSLOGTIMESTAMP:syslog;date;MMM dd HH:mm:ss}", ZoneOffset.UTC, false)
+        .match("Mar 07 16:45:56").capture();
+    Instant expected = ZonedDateTime.of(year, 3, 7, 16, 45, 56, 0, ZoneOffset.UTC).toInstant();
+    if (expected.isAfter(Instant.now().plus(Duration.ofDays(31)))) {
+      expected = ZonedDateTime.of(year - 1, 3, 7, 16, 45, 56, 0, ZoneOffset.UTC).toInstant();
+    }
+    assertEquals(expected, captures.get("syslog"));
+  }
+
   @Test
   public void testIssue64() throws Throwable {
     String pattern = "(?<message>client id): (?<clientid>.*)";
@@ -684,4 +742,231 @@ public class GrokTest {
     Map<String, Object> capture = gm.capture();
     assertEquals(1, capture.size());
   }
+
+  @Test
+  public void testSharedPatternDefinitions() {
+    Grok grok = compiler.compile("%{USERNAME}");
+    Grok other = compiler.compile("%{IP}");
+    assertSame(grok.patternDefinitions(), other.patternDefinitions());
+    assertEquals(compiler.getPatternDefinitions(), grok.getPatterns());
+
+    Grok inline = compiler.compile("%{USERNAME=\\d+} %{NUMBERS=\\d+}");
+    assertEquals("\\d+", inline.getPatterns().get("USERNAME"));
+    assertEquals("\\d+", inline.getPatterns().get("NUMBERS"));
+    assertEquals(grok.getPatterns().size() + 1, inline.getPatterns().size());
+    assertEquals("[a-zA-Z0-9._-]+", compiler.getPatternDefinitions().get("USERNAME"));
+
+    // the definitions shared with the compiler are not retained by each Grok, a copy of them is
+    Grok copy = new Grok(grok.getOriginalGrokPattern(), grok.getNamedRegex(), grok.getNamedRegexCollection(),
+        new HashMap<>(compiler.getPatternDefinitions()), ZoneOffset.UTC);
+    long definitionsSize = copy.estimateRetainedSize() - grok.estimateRetainedSize();
+    assertTrue(definitionsSize > 0);
+    // only the two inline definitions are retained on top of the shared ones
+    assertTrue(inline.estimateRetainedSize() - grok.estimateRetainedSize() < definitionsSize / 10);
+    assertTrue(compiler.estimateRetainedSize() > definitionsSize);
+
+    compiler.register("NUMBERS", "\\d+");
+    assertNotSame(grok.patternDefinitions(), compiler.compile("%{IP}").patternDefinitions());
+  }
+
+  @Test
+  public void testCachedGrokIsReadOnly() {
+    compiler.enableCache(10);
+    Grok grok = compiler.compile("%{WORD:verb} %{INT:status:int}");
+    grok.getPatterns().put("VERB", "\\w+");
+    assertFalse(grok.getPatterns().containsKey("VERB"));
+    for (Runnable change : Arrays.<Runnable>asList(() -> grok.namedGroups.clear(), () -> grok.groupTypes.clear(),
+        () -> grok.converters.clear(), () -> grok.getNamedRegexCollection().clear())) {
+      try {
+        change.run();
+        fail("a cached Grok is shared");
+      } catch (UnsupportedOperationException expected) {
+        assertSame(grok, compiler.compile("%{WORD:verb} %{INT:status:int}"));
+      }
+    }
+
+    // the definitions of the compiler are changed through its map, as by register
+    Map<String, String> definitions = compiler.getPatternDefinitions();
+    definitions.put("VERB", "GET|POST");
+    assertEquals("GET|POST", compiler.getPatternDefinitions().get("VERB"));
+    Grok verb = compiler.compile("%{VERB:verb}");
+    assertEquals("GET", verb.match("GET").capture().get("verb"));
+    definitions.entrySet().stream().filter(entry -> entry.getKey().equals("VERB")).findFirst().get()
+        .setValue("PUT");
+    assertNotSame(verb, compiler.compile("%{VERB:verb}"));
+    assertTrue(compiler.compile("%{VERB:verb}").match("GET").isNull());
+    definitions.remove("VERB");
+    assertFalse(compiler.getPatternDefinitions().containsKey("VERB"));
+  }
+
+  @Test
+  public void testMatchModes() {
+    ZoneId zone = ZoneOffset.UTC;
+    Grok find = compiler.compile("%{INT:id} %{WORD:name}", zone, false, Grok.MatchMode.FIND);
+    Grok prefix = compiler.compile("%{INT:id} %{WORD:name}", zone, false, Grok.MatchMode.LOOKING_AT);
+    Grok line = compiler.compile("%{INT:id} %{WORD:name}", zone, false, Grok.MatchMode.MATCHES);
+    assertEquals(Grok.MatchMode.FIND, compiler.compile("%{INT:id}").getMatchMode());
+
+    assertEquals("{id=12, name=foo}", find.match("x 12 foo bar").capture().toString());
+    assertTrue(prefix.match("x 12 foo bar").isNull());
+    assertTrue(line.match("x 12 foo bar").isNull());
+
+    Match match = prefix.match("12 foo bar");
+    assertEquals("{id=12, name=foo}", match.capture().toString());
+    assertEquals(6, match.getEnd());
+    assertTrue(line.match("12 foo bar").isNull());
+    assertEquals("{id=12, name=foo}", line.match("12 foo").capture().toString());
+  }
+
+  @Test
+  public void testMatchRegion() {
+    Grok grok = compiler.compile("^%{WORD:verb} %{INT:status}$");
+    StringBuilder block = new StringBuilder("GET 200\nPOST 404\nnothing\n");
+
+    Match match = grok.match(block, 8, 16);
+    assertEquals("{verb=POST, status=404}", match.capture().toString());
+    assertEquals(8, match.getStart());
+    assertEquals(16, match.getEnd());
+    assertSame(block, match.getSubject());
+    assertEquals("POST 404", match.getMatch().group());
+
+    assertEquals("{verb=GET, status=200}", grok.match(block, 0, 7).capture().toString());
+    assertTrue(grok.match(block, 17, 24).isNull());
+    assertTrue(grok.match(block, 0, 16).isNull());
+  }
+
+  @Test
+  public void testMatchBytes() {
+    Grok grok = compiler.compile("%{WORD:verb} %{NOTSPACE:path}");
+    byte[] line = "xx GET /index.html".getBytes(StandardCharsets.UTF_8);
+
+    ByteBuffer heap = ByteBuffer.wrap(line, 3, line.length - 3);
+    Match match = grok.match(heap);
+    assertTrue(match.getSubject() instanceof ByteCharSequence);
+    assertEquals("{verb=GET, path=/index.html}", match.capture().toString());
+    assertEquals(3, heap.position());
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(line.length);
+    direct.put(line).flip();
+    assertEquals("{verb=xx, path=GET}", grok.match(direct).capture().toString());
+
+    ByteBuffer utf8 = ByteBuffer.wrap("GET /caf\u00e9".getBytes(StandardCharsets.UTF_8));
+    assertEquals("{verb=GET, path=/caf\u00e9}", grok.match(utf8).capture().toString());
+  }
+
+  @Test
+  public void testMatchBudget() {
+    compiler.enableCache(10);
+    // the regex reads every x of the line, whatever the engine
+    Grok shared = compiler.compile("%{WORD:verb} (?<repeated>x+)y");
+    String line = "GET " + String.join("", Collections.nCopies(10_000, "x"));
+    Grok grok = shared.withMatchBudget(MatchBudget.ofCharReads(1_000));
+    assertEquals("{verb=GET, repeated=xxx}", grok.match("GET xxxy").capture().toString());
+
+    Match match = grok.match(line);
+    assertTrue(match.isAborted());
+    assertTrue(match.isNull());
+    assertEquals(1, grok.getAbortedMatchCount());
+
+    grok = grok.withMatchBudget(MatchBudget.ofTimeout(Duration.ofNanos(1)));
+    assertSame(Match.ABORTED, grok.match(line));
+    assertEquals(1, grok.getAbortedMatchCount());
+
+    // the cached Grok, shared with the other callers, has no budget
+    assertSame(shared, compiler.compile("%{WORD:verb} (?<repeated>x+)y"));
+    assertNull(shared.getMatchBudget());
+    assertEquals(0, shared.getAbortedMatchCount());
+    assertFalse(grok.withMatchBudget(null).match(line).isAborted());
+  }
+
+  @Test
+  public void testMatchRecord() {
+    Grok grok = compiler.compile("%{WORD:verb} %{INT:status:int} (?:%{NUMBER:took:float}|%{WORD:took})"
+        + " %{WORD:ok:boolean} %{NOTSPACE:user}");
+    GrokSchema schema = grok.getSchema();
+    assertEquals("GrokSchema{verb:string, status:int, took:float, ok:boolean, user:string}", schema.toString());
+    assertEquals(1, schema.getId("status"));
+    assertEquals(-1, schema.getId("unknown"));
+
+    GrokRecord record = grok.newRecord();
+    assertTrue(grok.match("GET 200 1.5 TRUE \"bob\"", record));
+    assertEquals("GET", record.getString(schema.getId("verb")));
+    assertEquals(200, record.getLong(schema.getId("status")));
+    assertEquals(200, record.getValue(schema.getId("status")));
+    assertEquals(1.5, record.getDouble(schema.getId("took")), 0);
+    assertTrue(record.getBoolean(schema.getId("ok")));
+    assertEquals("bob", record.getString(schema.getId("user")));
+    assertTrue(record.getSlice(schema.getId("user")).contentEquals("bob"));
+
+    assertTrue(grok.match("POST -12 slow no alice", record));
+    assertEquals(-12, record.getLong(schema.getId("status")));
+    assertEquals("slow", record.getValue(schema.getId("took")));
+    assertEquals(ParseStatus.INVALID, record.checkDouble(schema.getId("took")));
+    assertEquals(ParseStatus.PARSED, record.checkLong(schema.getId("status")));
+    assertEquals(ParseStatus.INVALID, record.checkLong(schema.getId("user")));
+    assertFalse(record.getBoolean(schema.getId("ok")));
+    assertEquals("GrokRecord{verb=POST, status=-12, took=slow, ok=no, user=alice}", record.toString());
+
+    assertFalse(grok.match("nothing", record));
+    assertFalse(record.has(0));
+    assertNull(record.getValue(0));
+    assertEquals(ParseStatus.MISSING, record.checkLong(schema.getId("status")));
+    assertEquals(ParseStatus.MISSING, record.checkDouble(schema.getId("took")));
+    try {
+      compiler.compile("%{WORD:verb}").match("GET", record);
+      fail("the record belongs to another Grok");
+    } catch (IllegalArgumentException expected) {
+      assertFalse(record.isMatched());
+    }
+
+    // the copies of the Grok fill its records
+    String line = "GET 200 1.5 TRUE bob";
+    Grok budgeted = grok.withMatchBudget(MatchBudget.ofCharReads(1_000));
+    assertTrue(budgeted.match(line, record));
+    assertSame(budgeted, record.getGrok());
+    assertEquals(200, record.getLong(schema.getId("status")));
+    assertFalse(grok.withMatchBudget(MatchBudget.ofCharReads(5)).match(line, record));
+    assertTrue(record.isAborted());
+    assertTrue(budgeted.match(line, record));
+    assertEquals("GET", budgeted.binder(CaptureTest.Request.class).bind(record).verb);
+    Grok interned = budgeted.withInternedValues("verb", 10);
+    assertTrue(interned.match(new String(line), record));
+    String verb = record.getString(schema.getId("verb"));
+    assertTrue(interned.match(new String(line), record));
+    assertSame(verb, record.getString(schema.getId("verb")));
+  }
+
+  @Test
+  public void testPrimitiveAccessors() {
+    Grok grok = compiler.compile("%{WORD:verb} %{NOTSPACE:status} %{NOTSPACE:took} %{WORD:ok}(?: %{WORD:user})?");
+    Match match = grok.match("GET 200 -1.25e2 TRUE");
+    assertTrue(match.has("status"));
+    assertFalse(match.has("user"));
+    assertEquals(200, match.getInt("status"));
+    assertEquals(Match.ParseStatus.PARSED, match.getParseStatus());
+    assertEquals(-125.0, match.getDouble("took"), 0);
+    assertTrue(match.getBoolean("ok"));
+    assertEquals(0, match.getLong("user"));
+    assertEquals(Match.ParseStatus.MISSING, match.getParseStatus());
+    assertEquals(0, match.getInt("verb"));
+    assertEquals(Match.ParseStatus.INVALID, match.getParseStatus());
+
+    match = grok.match("GET 3000000000 0.1 no");
+    assertEquals(0, match.getInt("status"));
+    assertEquals(Match.ParseStatus.OVERFLOW, match.getParseStatus());
+    assertEquals(3000000000L, match.getLong("status"));
+    assertEquals(0.1, match.getDouble("took"), 0);
+    assertFalse(match.getBoolean("ok"));
+    assertEquals(Match.ParseStatus.INVALID, match.getParseStatus());
+
+    match = grok.match("GET -9223372036854775808 1234567890.123456789 false");
+    assertEquals(Long.MIN_VALUE, match.getLong("status"));
+    assertEquals(1234567890.123456789, match.getDouble("took"), 0);
+    assertEquals(0, match.getDouble("verb"), 0);
+    assertEquals(Match.ParseStatus.INVALID, match.getParseStatus());
+    assertEquals(0, match.getLong("took"));
+    assertEquals(Match.ParseStatus.INVALID, match.getParseStatus());
+    assertEquals(0, grok.match("GET 9223372036854775808 1e400 x").getLong("status"));
+    assertEquals(0, grok.match("GET 1 1e400 x").getDouble("took"), 0);
+  }
 }
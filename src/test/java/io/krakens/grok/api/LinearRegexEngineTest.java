@@ -0,0 +1,230 @@
+package io.krakens.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.io.Resources;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LinearRegexEngineTest {
+
+  GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.register(Resources.getResource(ResourceManager.PATTERNS).openStream());
+  }
+
+  @Test
+  public void test001_sameGroupsAsJdk() throws Exception {
+    List<String> lines = new ArrayList<>(Arrays.asList("", "12:34:56", "2004-03-07T16:45:56.123+01:00",
+        "Mar  7 16:45:56 host prog[123]: msg", "user@host.com", "/usr/local/bin", "aa:bb:cc:dd:ee:ff",
+        "2001:db8::1", "http://a.b/c?d=e", "foo bar\n", "x\r\n"));
+    try (BufferedReader reader = Files.newBufferedReader(Paths.get(ApacheTest.LOG_FILE), StandardCharsets.UTF_8)) {
+      reader.lines().limit(100).forEach(lines::add);
+    }
+    int supported = 0;
+    for (String name : compiler.getPatternDefinitions().keySet()) {
+      String regex = compiler.compile("%{" + name + "}").getNamedRegex();
+      if (!LinearRegexEngine.supports(regex)) {
+        continue;
+      }
+      supported++;
+      RegexMatcher linear = LinearRegexEngine.INSTANCE.compile(regex).matcher();
+      Matcher jdk = Pattern.compile(regex).matcher("");
+      for (String line : lines) {
+        boolean found = jdk.reset(line).find();
+        assertEquals(name + " on " + line, found, linear.find(line, 0, line.length()));
+        for (int group = 0; found && group <= jdk.groupCount(); group++) {
+          assertEquals(name + " on " + line, jdk.start(group), linear.start(group));
+          assertEquals(name + " on " + line, jdk.end(group), linear.end(group));
+        }
+        assertEquals(name + " on " + line, jdk.reset().matches(), linear.matches(line, 0, line.length()));
+        assertEquals(name + " on " + line, jdk.reset().lookingAt(), linear.lookingAt(line, 0, line.length()));
+      }
+    }
+    assertTrue(supported > 50);
+  }
+
+  @Test
+  public void test002_unsupportedConstructs() {
+    for (String regex : Arrays.asList("(a)\\1", "a++", "(?i)a", "(?>a+)b", "(?=a+)", "\\p{L}", "[a&&b]")) {
+      try {
+        LinearRegexEngine.INSTANCE.compile(regex);
+        fail(regex);
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().startsWith("Regex not supported by the linear engine"));
+      }
+    }
+    assertNotNull(LinearRegexEngine.withFallback(JdkRegexEngine.INSTANCE).compile("(?>a+)b"));
+  }
+
+  @Test
+  public void test003_grokWithLinearEngine() {
+    compiler.setRegexEngine(LinearRegexEngine.withFallback(JdkRegexEngine.INSTANCE));
+    Grok grok = compiler.compile("%{IPV4:ip} %{NUMBER:bytes:int} (?<word>%{WORD})");
+    Map<String, Object> capture = grok.capture("host 10.0.0.1 1234 end");
+    assertEquals("10.0.0.1", capture.get("ip"));
+    assertEquals(1234, capture.get("bytes"));
+    assertEquals("end", capture.get("word"));
+
+    compiler.setRegexEngine(LinearRegexEngine.INSTANCE);
+    grok = compiler.compile("%{IPV4:ip} %{INT:bytes:int}");
+    Match match = grok.match("host 10.0.0.1 1234 end");
+    assertEquals(5, match.getStart());
+    assertEquals("10.0.0.1", match.capture().get("ip"));
+    assertEquals("10.0.0.1 1234", match.getMatch().group());
+
+    grok = compiler.compile("(?<word>\\w+)(?: (\\d+)| (?<dash>-))? (?<rest>.*)", true);
+    Matcher matcher = grok.match("\ud83d\ude00 ab - \ud83d\ude00 cd").getMatch();
+    assertEquals("ab - \ud83d\ude00 cd", matcher.group());
+    assertEquals("ab", matcher.group("word"));
+    assertEquals(null, matcher.group(2));
+    assertEquals("-", matcher.group("dash"));
+    assertEquals("\ud83d\ude00 cd", matcher.group("rest"));
+    matcher = grok.match("ab 12 cd").getMatch();
+    assertEquals("12", matcher.group(2));
+    assertEquals(null, matcher.group("dash"));
+    assertEquals(6, matcher.start("rest"));
+
+    try {
+      compiler.compile("(?<word>\\w+)[(?<x>)]", true);
+      fail("the named groups can't be numbered");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    compiler.setRegexEngine(JdkRegexEngine.INSTANCE);
+    assertEquals("ab(", compiler.compile("(?<word>\\w+)[(?<x>)]", true).match("ab(").getMatch().group());
+  }
+
+  @Test
+  public void test004_noBacktracking() {
+    compiler.setRegexEngine(LinearRegexEngine.INSTANCE);
+    Grok grok = compiler.compile("(?<word>(x+x+)+)y", true);
+    char[] line = new char[100_000];
+    Arrays.fill(line, 'x');
+    assertFalse(grok.match(new String(line)).capture().containsKey("word"));
+  }
+
+  @Test
+  public void test005_emptyIterations() {
+    RegexEngine engine = LinearRegexEngine.withFallback(JdkRegexEngine.INSTANCE);
+    List<String[]> cases = Arrays.asList(new String[] {"(?<n0>|)(\\b|.{1,2})*|", "cb"},
+        new String[] {"((\\b))*c{1,2}", "ba c"}, new String[] {"a+(?<n0>){1,2}|(?:(.*)*|b)*", ""},
+        new String[] {"(){0,1}a", "ab"});
+    for (String[] regexAndLine : cases) {
+      String regex = regexAndLine[0];
+      assertFalse(regex, LinearRegexEngine.supports(regex));
+      assertSameMatch(regex, regexAndLine[1], engine.compile(regex).matcher());
+    }
+    assertTrue(LinearRegexEngine.supports("()?a(?:b?c)*"));
+  }
+
+  @Test
+  public void test006_randomRegexesMatchLikeJdk() {
+    Random random = new Random(42);
+    int supported = 0;
+    for (int run = 0; run < 20_000; run++) {
+      String regex = randomAlternation(random, 0, false);
+      if (!LinearRegexEngine.supports(regex)) {
+        continue;
+      }
+      supported++;
+      RegexMatcher linear = LinearRegexEngine.INSTANCE.compile(regex).matcher();
+      for (int line = 0; line < 4; line++) {
+        StringBuilder text = new StringBuilder();
+        for (int length = random.nextInt(5); length > 0; length--) {
+          text.append("abc ".charAt(random.nextInt(4)));
+        }
+        assertSameMatch(regex, text.toString(), linear);
+      }
+    }
+    assertTrue(supported > 5000);
+  }
+
+  private static void assertSameMatch(String regex, String line, RegexMatcher linear) {
+    Matcher jdk = Pattern.compile(regex).matcher(line);
+    String message = regex + " on \"" + line + "\"";
+    boolean found = jdk.find();
+    assertEquals(message, found, linear.find(line, 0, line.length()));
+    for (int group = 0; found && group <= jdk.groupCount(); group++) {
+      assertEquals(message, jdk.start(group), linear.start(group));
+      assertEquals(message, jdk.end(group), linear.end(group));
+    }
+    assertEquals(message, jdk.reset().matches(), linear.matches(line, 0, line.length()));
+    assertEquals(message, jdk.reset().lookingAt(), linear.lookingAt(line, 0, line.length()));
+  }
+
+  /**
+   * Random regex over a, b and c. The groups nested in a repetition other than {@code ?} are left out, as
+   * their values differ from {@code java.util.regex} when it backtracks from an iteration.
+   */
+  private static String randomAlternation(Random random, int depth, boolean repeated) {
+    StringBuilder regex = new StringBuilder(randomSequence(random, depth, repeated));
+    while (random.nextInt(4) == 0) {
+      regex.append('|').append(randomSequence(random, depth, repeated));
+    }
+    return regex.toString();
+  }
+
+  private static String randomSequence(Random random, int depth, boolean repeated) {
+    String[] quantifiers = {"", "", "", "*", "+", "?", "{1,2}", "{2}", "{0,1}", "{1}", "{0,2}"};
+    StringBuilder regex = new StringBuilder();
+    for (int count = random.nextInt(3) + 1; count > 0; count--) {
+      String quantifier = quantifiers[random.nextInt(quantifiers.length)];
+      boolean repeats = repeated || quantifier.length() > 1 || quantifier.equals("*") || quantifier.equals("+");
+      String atom;
+      switch (depth > 2 ? random.nextInt(6) : random.nextInt(9)) {
+        case 0:
+          atom = ".";
+          break;
+        case 1:
+          atom = "\\b";
+          break;
+        case 2:
+          atom = "";
+          break;
+        case 3:
+          atom = "[ab]";
+          break;
+        case 6:
+          atom = "(?:" + randomAlternation(random, depth + 1, repeats) + ")";
+          break;
+        case 7:
+        case 8:
+          atom = repeated ? "(?:" + randomAlternation(random, depth + 1, true) + ")"
+              : "(" + randomAlternation(random, depth + 1, repeats) + ")";
+          break;
+        default:
+          atom = String.valueOf("abc".charAt(random.nextInt(3)));
+      }
+      if (!atom.isEmpty()) {
+        regex.append(atom).append(quantifier);
+        if (!quantifier.isEmpty() && random.nextInt(4) == 0) {
+          regex.append('?');
+        }
+      }
+    }
+    return regex.toString();
+  }
+}